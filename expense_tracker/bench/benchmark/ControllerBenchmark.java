@@ -0,0 +1,71 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import controller.ExpenseTrackerController;
+import model.ExpenseTrackerModel;
+import model.Filter.CategoryFilter;
+import view.HeadlessView;
+
+/**
+ * ExpenseTrackerController.applyFilter: filtering the model and highlighting
+ * the matching rows in a headless view. applyFilter alternates between two
+ * filters without cached results, so every call computes the rows;
+ * cachedFilter alternates with the results cached, and reappliedFilter
+ * applies the same filter again, which reuses its live rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g"})
+public class ControllerBenchmark {
+
+  @Param({"10000", "1000000", "10000000"})
+  int rows;
+
+  private ExpenseTrackerController controller;
+  private final CategoryFilter[] filters = {new CategoryFilter("travel"), new CategoryFilter("food")};
+  private int next;
+
+  @Setup(Level.Trial)
+  public void createController() {
+    ExpenseTrackerModel model = Ledgers.model(rows, ExpenseTrackerModel.DEFAULT_UNDO_DEPTH);
+    controller = new ExpenseTrackerController(model, new HeadlessView());
+    controller.refresh();
+  }
+
+  @Benchmark
+  public void applyFilter() {
+    controller.getFilterCache().clear();
+    controller.setFilter(filters[next++ & 1]);
+    controller.applyFilter();
+  }
+
+  @Benchmark
+  public void cachedFilter() {
+    controller.setFilter(filters[next++ & 1]);
+    controller.applyFilter();
+  }
+
+  @Benchmark
+  public void reappliedFilter() {
+    controller.setFilter(filters[0]);
+    controller.applyFilter();
+  }
+
+}
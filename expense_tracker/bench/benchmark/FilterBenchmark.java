@@ -0,0 +1,61 @@
+package benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.Filter.AmountFilter;
+import model.Filter.CategoryFilter;
+
+/**
+ * The filters on the model's current transactions, through the public filter
+ * method that the controller and the tests use.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g"})
+public class FilterBenchmark {
+
+  @Param({"10000", "1000000", "10000000"})
+  int rows;
+
+  private ExpenseTrackerModel model;
+  private AmountFilter amountFilter;
+  private CategoryFilter categoryFilter;
+
+  @Setup(Level.Trial)
+  public void createModel() {
+    model = Ledgers.model(rows, ExpenseTrackerModel.DEFAULT_UNDO_DEPTH);
+    // One of 99,900 amounts, and one of five categories
+    amountFilter = new AmountFilter(500.0);
+    categoryFilter = new CategoryFilter("travel");
+  }
+
+  @Benchmark
+  public List<Transaction> amountFilter() {
+    return amountFilter.filter(model.getTransactions());
+  }
+
+  @Benchmark
+  public List<Transaction> categoryFilter() {
+    return categoryFilter.filter(model.getTransactions());
+  }
+
+}
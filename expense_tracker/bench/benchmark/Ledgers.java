@@ -0,0 +1,49 @@
+package benchmark;
+
+import java.util.Random;
+
+import model.ExpenseTrackerModel;
+
+/**
+ * Builds the models the benchmarks run on. The rows are generated from a fixed
+ * seed, so every run and every fork measures the same data.
+ */
+final class Ledgers {
+
+  static final String[] CATEGORIES = {"food", "travel", "bills", "entertainment", "other"};
+
+  private static final int BATCH = 1 << 16;
+  // 2024-01-01T00:00:00Z, one row per minute from there on
+  private static final long FIRST_TIME = 1704067200000L;
+
+  private Ledgers() {
+  }
+
+  /**
+   * @return a model with the given number of rows, added in batches
+   */
+  static ExpenseTrackerModel model(int rows, int undoDepth) {
+    ExpenseTrackerModel model = new ExpenseTrackerModel(undoDepth);
+    Random random = new Random(42);
+    double[] amounts = new double[BATCH];
+    String[] categories = new String[BATCH];
+    long[] times = new long[BATCH];
+    for (int added = 0; added < rows; ) {
+      int count = Math.min(BATCH, rows - added);
+      for (int i = 0; i < count; i++) {
+        amounts[i] = amount(random);
+        categories[i] = CATEGORIES[random.nextInt(CATEGORIES.length)];
+        times[i] = FIRST_TIME + (added + i) * 60_000L;
+      }
+      model.addTransactions(amounts, categories, times, count);
+      added += count;
+    }
+    return model;
+  }
+
+  // Whole cents from 1.00 to 999.99
+  static double amount(Random random) {
+    return (100 + random.nextInt(99_900)) / 100.0;
+  }
+
+}
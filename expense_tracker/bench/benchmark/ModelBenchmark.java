@@ -0,0 +1,122 @@
+package benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.Blackhole;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+
+/**
+ * Adds, removals and undos on the model.
+ *
+ * These calls change the model, so they cannot run for a fixed time: each
+ * iteration is one batch of BATCH calls (reported per call), and the model is
+ * put back into its original state between iterations by undoing the batch.
+ * The undo depth is BATCH, so the history is as deep as a batch and no deeper.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 50)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g"})
+public class ModelBenchmark {
+
+  static final int BATCH = 5000;
+
+  @Param({"10000", "1000000", "10000000"})
+  int rows;
+
+  private ExpenseTrackerModel model;
+  private final Transaction[] removed = new Transaction[BATCH];
+  private final Random random = new Random(7);
+
+  @Setup(Level.Trial)
+  public void createModel() {
+    model = Ledgers.model(rows, BATCH);
+  }
+
+  @Setup(Level.Iteration)
+  public void prepareBatch(BenchmarkParams params) {
+    String benchmark = params.getBenchmark();
+    if (benchmark.endsWith(".removeTransaction") || benchmark.endsWith(".undo")) {
+      // Rows spread over the whole table, each removed once
+      List<Transaction> transactions = model.getTransactions();
+      int stride = transactions.size() / BATCH;
+      for (int i = 0; i < BATCH; i++) {
+        removed[i] = transactions.get(i * stride);
+      }
+    }
+    if (benchmark.endsWith(".undo")) {
+      for (Transaction t : removed) {
+        model.removeTransaction(t);
+      }
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void restoreModel(BenchmarkParams params) {
+    // Undoes the adds or removals of the iteration; the undo benchmark already did
+    if (!params.getBenchmark().endsWith(".undo")) {
+      while (!model.isUndoStackEmpty()) {
+        model.undo();
+      }
+    }
+  }
+
+  // Creating and validating the transaction is part of what every add costs
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void addTransaction() {
+    for (int i = 0; i < BATCH; i++) {
+      model.addTransaction(new Transaction(Ledgers.amount(random), Ledgers.CATEGORIES[i % Ledgers.CATEGORIES.length]));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void removeTransaction() {
+    for (Transaction t : removed) {
+      model.removeTransaction(t);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void undo() {
+    for (int i = 0; i < BATCH; i++) {
+      model.undo();
+    }
+  }
+
+  /**
+   * getTransactions does not change the model, so it is measured over time.
+   */
+  @Benchmark
+  @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+  @Warmup(iterations = 5, time = 1)
+  @Measurement(iterations = 5, time = 1)
+  public void getTransactions(Blackhole blackhole) {
+    List<Transaction> transactions = model.getTransactions();
+    blackhole.consume(transactions.size());
+  }
+
+}
@@ -0,0 +1,72 @@
+package benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JTable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import view.TransactionTableModel;
+
+/**
+ * A full refresh of the transactions table, as done by
+ * ExpenseTrackerView.refreshTable, followed by reading the cells of one
+ * screen of rows as the table does when it paints.
+ *
+ * The view is a JFrame, which cannot be created without a display, so the
+ * benchmark drives its table model and a JTable directly. Both work headless.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-Djava.awt.headless=true"})
+public class ViewBenchmark {
+
+  // Rows visible in the application's table
+  private static final int SCREEN_ROWS = 40;
+
+  @Param({"10000", "1000000", "10000000"})
+  int rows;
+
+  private ExpenseTrackerModel model;
+  private TransactionTableModel tableModel;
+  private JTable table;
+
+  @Setup(Level.Trial)
+  public void createModel() {
+    model = Ledgers.model(rows, ExpenseTrackerModel.DEFAULT_UNDO_DEPTH);
+    tableModel = new TransactionTableModel();
+    // The table listens to the table model like the view's table does
+    table = new JTable(tableModel);
+  }
+
+  @Benchmark
+  public void refreshTable(Blackhole blackhole) {
+    List<Transaction> transactions = model.getTransactions();
+    tableModel.setTransactions(transactions);
+    int first = table.getRowCount() - SCREEN_ROWS;
+    for (int row = Math.max(0, first); row < table.getRowCount(); row++) {
+      for (int column = 0; column < table.getColumnCount(); column++) {
+        blackhole.consume(table.getValueAt(row, column));
+      }
+    }
+  }
+
+}
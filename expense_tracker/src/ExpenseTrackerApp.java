@@ -1,6 +1,11 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
 import controller.ExpenseTrackerController;
+import controller.JmxMetrics;
 import model.ExpenseTrackerModel;
 import model.Filter.AmountFilter;
 import model.Filter.CategoryFilter;
@@ -11,12 +16,26 @@ public class ExpenseTrackerApp {
   /**
    * @param args
    */
-  public static void main(String[] args) {
+  public static void main(String[] args) throws IOException {
     
     // Create MVC components
-    ExpenseTrackerModel model = new ExpenseTrackerModel();
+    // The transactions are kept in a log file and restored on the next start
+    ExpenseTrackerModel model = new ExpenseTrackerModel(Paths.get(System.getProperty("expense.log", "expenses.log")));
     ExpenseTrackerView view = new ExpenseTrackerView();
-    ExpenseTrackerController controller = new ExpenseTrackerController(model, view);
+    // Changes made off the event dispatch thread reach the table through it
+    ExpenseTrackerController controller = new ExpenseTrackerController(model, view, SwingUtilities::invokeLater);
+    controller.refresh();
+    // Latency and size metrics for JMX tools such as JConsole
+    JmxMetrics.register(model);
+    JmxMetrics.register(controller.getFilterCache());
+    // Checkpoint on exit so the next start does not replay the whole log
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      try {
+        model.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }));
     
 
     // Initialize view
@@ -50,6 +69,17 @@ public class ExpenseTrackerApp {
       
     });
 
+    // Handle redo button clicks
+    view.getRedoBtn().addActionListener(e -> {
+      if (!model.isRedoStackEmpty()){
+        controller.redoTransaction();
+      }else{
+        JOptionPane.showMessageDialog(view, "No transactions to redo");
+        view.toFront();
+      }
+
+    });
+
     // Handle remove transaction button clicks
     view.getRemoveTransactionBtn().addActionListener(e -> {
       controller.handleSelectedRows();
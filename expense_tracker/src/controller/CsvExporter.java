@@ -0,0 +1,129 @@
+package controller;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import model.ExpenseTrackerModel;
+import model.TransactionSnapshot;
+import model.Filter.TransactionFilter;
+
+/**
+ * Streams transactions to a CSV file in the format read by CsvImporter:
+ * amount,category,time with the time in epoch milliseconds.
+ *
+ * The rows are read from the columns of a model snapshot, without creating a
+ * Transaction or a String per row. Numbers are formatted into one reused
+ * StringBuilder, the category names are encoded once per dictionary entry, and
+ * the bytes are collected in one reused buffer that is written to the channel
+ * whenever it is full. The memory used does not depend on the number of rows,
+ * apart from the matching row positions of a filter. Since the buffers are
+ * reused, one exporter must not be used by several threads at once.
+ */
+public class CsvExporter {
+
+  private static final byte[] HEADER = "amount,category,time\n".getBytes(StandardCharsets.US_ASCII);
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final ExpenseTrackerModel model;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private final StringBuilder number = new StringBuilder(32);
+
+  public CsvExporter(ExpenseTrackerModel model) {
+    if (model == null) {
+      throw new IllegalArgumentException("The model must be non-null.");
+    }
+    this.model = model;
+  }
+
+  /**
+   * Writes the transactions to the file, replacing its content.
+   *
+   * @param filter selects the rows to export, or null for all of them
+   * @return the number of exported rows
+   */
+  public int export(Path file, TransactionFilter filter) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      return export(channel, filter);
+    }
+  }
+
+  /**
+   * Writes the transactions to the channel, which is not closed.
+   *
+   * @param filter selects the rows to export, or null for all of them
+   * @return the number of exported rows
+   */
+  public int export(WritableByteChannel out, TransactionFilter filter) throws IOException {
+    // The snapshot is taken in O(1) and does not change while it is written
+    TransactionSnapshot snapshot = model.getSnapshot();
+    int[] rows = filter == null ? null : filter.filterRows(snapshot);
+    int count = rows == null ? snapshot.size() : rows.length;
+    byte[][] categories = new byte[snapshot.categoryCount()][];
+
+    buffer.clear();
+    buffer.put(HEADER);
+    for (int i = 0; i < count; i++) {
+      int row = rows == null ? i : rows[i];
+      int code = snapshot.categoryCodeAt(row);
+      if (categories[code] == null) {
+        categories[code] = snapshot.categoryName(code).getBytes(StandardCharsets.UTF_8);
+      }
+      number.setLength(0);
+      number.append(snapshot.amountAt(row));
+      putNumber(out);
+      put(out, (byte) ',');
+      put(out, categories[code]);
+      put(out, (byte) ',');
+      number.setLength(0);
+      number.append(snapshot.timeAt(row));
+      putNumber(out);
+      put(out, (byte) '\n');
+    }
+    flush(out);
+    return count;
+  }
+
+  // Copies the ASCII digits of the number builder into the buffer
+  private void putNumber(WritableByteChannel out) throws IOException {
+    if (buffer.remaining() < number.length()) {
+      flush(out);
+    }
+    for (int i = 0; i < number.length(); i++) {
+      buffer.put((byte) number.charAt(i));
+    }
+  }
+
+  private void put(WritableByteChannel out, byte b) throws IOException {
+    if (!buffer.hasRemaining()) {
+      flush(out);
+    }
+    buffer.put(b);
+  }
+
+  private void put(WritableByteChannel out, byte[] bytes) throws IOException {
+    int offset = 0;
+    while (offset < bytes.length) {
+      if (!buffer.hasRemaining()) {
+        flush(out);
+      }
+      int length = Math.min(buffer.remaining(), bytes.length - offset);
+      buffer.put(bytes, offset, length);
+      offset += length;
+    }
+  }
+
+  private void flush(WritableByteChannel out) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      out.write(buffer);
+    }
+    buffer.clear();
+  }
+
+}
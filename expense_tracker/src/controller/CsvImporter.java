@@ -0,0 +1,367 @@
+package controller;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import model.ExpenseTrackerModel;
+import model.TransactionValidator;
+
+/**
+ * Streaming import of transactions from a CSV file with the lines
+ * amount,category[,time], where time is in epoch milliseconds and defaults to
+ * the start of the import. An optional header line is skipped. Fields may be
+ * quoted; a quoted field can contain commas and doubled quotes, but not line
+ * breaks.
+ *
+ * The file is read in chunks that end at a line break. Each chunk is parsed
+ * and validated with the model's TransactionValidator on a pool of threads, and the parsed
+ * chunks are appended to the model in file order, one batch per chunk. Only a
+ * bounded number of chunks is in flight between reading and appending, so the
+ * reader waits when parsing or appending falls behind and the file is never
+ * held in memory as a whole.
+ */
+public class CsvImporter {
+
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+  private final ExpenseTrackerModel model;
+  private final int threads;
+  private final int chunkSize;
+
+  public CsvImporter(ExpenseTrackerModel model) {
+    this(model, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * @param threads the number of parser threads
+   * @param chunkSize the number of bytes read at a time; longer lines are still read whole
+   */
+  public CsvImporter(ExpenseTrackerModel model, int threads, int chunkSize) {
+    if (model == null) {
+      throw new IllegalArgumentException("The model must be non-null.");
+    }
+    if (threads <= 0 || chunkSize <= 0) {
+      throw new IllegalArgumentException("Invalid import settings");
+    }
+    this.model = model;
+    this.threads = threads;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Imports the valid lines of the file. Invalid lines are skipped and reported
+   * in the result with their line numbers.
+   */
+  public ImportResult importFile(Path file) throws IOException {
+    ExecutorService parsers = Executors.newFixedThreadPool(threads, CsvImporter::daemon);
+    ExecutorService reader = Executors.newSingleThreadExecutor(CsvImporter::daemon);
+    // Chunks that have been read but not yet appended
+    Semaphore inFlight = new Semaphore(threads * 2);
+    BlockingQueue<CompletableFuture<Batch>> batches = new LinkedBlockingQueue<>();
+    AtomicBoolean done = new AtomicBoolean();
+    long defaultTime = System.currentTimeMillis();
+    TransactionValidator validator = model.getValidator();
+    reader.execute(() -> read(file, parsers, inFlight, batches, done, defaultTime, validator));
+
+    ImportResult result = new ImportResult();
+    try {
+      while (true) {
+        Batch batch = batches.take().get();
+        if (batch == null) {
+          return result;
+        }
+        model.addTransactions(batch.amounts, batch.categories, batch.times, batch.count);
+        result.addImported(batch.count);
+        for (int i = 0; i < batch.reported; i++) {
+          result.addRejection(batch.rejectedLines[i], batch.reasons[i]);
+        }
+        result.addRejected(batch.rejected - batch.reported);
+        inFlight.release();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("The import was interrupted");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IOException(cause);
+    } finally {
+      // Stops the reader if the import ended early
+      done.set(true);
+      inFlight.release(threads * 2);
+      reader.shutdownNow();
+      parsers.shutdownNow();
+    }
+  }
+
+  // Runs on the reader thread: cuts the file into chunks of whole lines and hands them to the parsers
+  private void read(Path file, ExecutorService parsers, Semaphore inFlight,
+                    BlockingQueue<CompletableFuture<Batch>> batches, AtomicBoolean done, long defaultTime,
+                    TransactionValidator validator) {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+      long line = 1;
+      boolean eof = false;
+      while (!eof) {
+        inFlight.acquire();
+        if (done.get()) {
+          return;
+        }
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer) < 0) {
+            eof = true;
+            break;
+          }
+        }
+        byte[] bytes = buffer.array();
+        int end = buffer.position();
+        int cut = eof ? end : lastLineBreak(bytes, end) + 1;
+        if (cut == 0 && !eof) {
+          // No line break in a full buffer: read on with a larger one
+          buffer = ByteBuffer.allocate(bytes.length * 2).put(bytes, 0, end);
+          inFlight.release();
+          continue;
+        }
+        if (cut > 0) {
+          byte[] chunk = Arrays.copyOfRange(bytes, 0, cut);
+          long firstLine = line;
+          int lines = lineBreaks(chunk);
+          line += lines;
+          batches.add(CompletableFuture.supplyAsync(() -> parse(chunk, firstLine, lines + 1, defaultTime, validator),
+              parsers));
+        }
+        // Keep the incomplete last line for the next chunk
+        buffer.limit(end).position(cut);
+        buffer.compact();
+      }
+      batches.add(CompletableFuture.completedFuture(null));
+    } catch (IOException | RuntimeException e) {
+      CompletableFuture<Batch> failed = new CompletableFuture<>();
+      failed.completeExceptionally(e);
+      batches.add(failed);
+    } catch (InterruptedException e) {
+      // The import was stopped
+    }
+  }
+
+  // Runs on a parser thread
+  private static Batch parse(byte[] chunk, long firstLine, int lines, long defaultTime,
+                             TransactionValidator validator) {
+    Batch batch = new Batch(lines);
+    // Parsed category strings, so equal categories share one string and are validated once
+    Map<String, String> categories = new HashMap<>();
+    long line = firstLine;
+    int start = 0;
+    while (start < chunk.length) {
+      int end = start;
+      while (end < chunk.length && chunk[end] != '\n') {
+        end++;
+      }
+      int lineEnd = end > start && chunk[end - 1] == '\r' ? end - 1 : end;
+      parseLine(chunk, start, lineEnd, line, batch, categories, defaultTime, validator);
+      start = end + 1;
+      line++;
+    }
+    return batch;
+  }
+
+  private static void parseLine(byte[] chunk, int start, int end, long line, Batch batch,
+                                Map<String, String> categories, long defaultTime,
+                                TransactionValidator validator) {
+    int firstComma = nextComma(chunk, start, end);
+    if (firstComma == -1) {
+      if (!isBlank(chunk, start, end)) {
+        batch.reject(line, "Expected amount,category[,time]");
+      }
+      return;
+    }
+    int secondComma = nextComma(chunk, firstComma + 1, end);
+    if (secondComma != -1 && nextComma(chunk, secondComma + 1, end) != -1) {
+      batch.reject(line, "Expected amount,category[,time]");
+      return;
+    }
+
+    String amountField = field(chunk, start, firstComma);
+    if (!isDecimal(amountField)) {
+      if (line == 1 && amountField.equalsIgnoreCase("amount")) {
+        // Header line
+        return;
+      }
+      batch.reject(line, "Invalid amount: " + amountField);
+      return;
+    }
+    double amount = Double.parseDouble(amountField);
+    if (!validator.isValidAmount(amount)) {
+      batch.reject(line, "The amount is not valid.");
+      return;
+    }
+
+    String category = field(chunk, firstComma + 1, secondComma == -1 ? end : secondComma);
+    String known = categories.get(category);
+    if (known == null) {
+      known = validator.isValidCategory(category) ? category : "";
+      categories.put(category, known);
+    }
+    if (known.isEmpty()) {
+      batch.reject(line, "The category is not valid.");
+      return;
+    }
+
+    long time = defaultTime;
+    if (secondComma != -1) {
+      String timeField = field(chunk, secondComma + 1, end);
+      try {
+        time = Long.parseLong(timeField);
+      } catch (NumberFormatException e) {
+        batch.reject(line, "Invalid time: " + timeField);
+        return;
+      }
+    }
+    batch.add(amount, known, time);
+  }
+
+  // Returns the field without surrounding blanks and quotes
+  private static String field(byte[] chunk, int start, int end) {
+    while (start < end && chunk[start] == ' ') {
+      start++;
+    }
+    while (end > start && chunk[end - 1] == ' ') {
+      end--;
+    }
+    if (end - start >= 2 && chunk[start] == '"' && chunk[end - 1] == '"') {
+      // A quote inside a quoted field is written twice
+      return new String(chunk, start + 1, end - start - 2, StandardCharsets.UTF_8).replace("\"\"", "\"");
+    }
+    return new String(chunk, start, end - start, StandardCharsets.UTF_8);
+  }
+
+  // Double.parseDouble also accepts NaN, Infinity, hex floats and type suffixes
+  private static boolean isDecimal(String field) {
+    int i = 0;
+    if (i < field.length() && (field.charAt(i) == '+' || field.charAt(i) == '-')) {
+      i++;
+    }
+    boolean digits = false;
+    boolean point = false;
+    for (; i < field.length(); i++) {
+      char c = field.charAt(i);
+      if (c >= '0' && c <= '9') {
+        digits = true;
+      } else if (c == '.' && !point) {
+        point = true;
+      } else {
+        return false;
+      }
+    }
+    return digits;
+  }
+
+  // Returns the position of the next comma outside quotes, or -1
+  private static int nextComma(byte[] chunk, int start, int end) {
+    boolean quoted = false;
+    for (int i = start; i < end; i++) {
+      if (chunk[i] == '"') {
+        quoted = !quoted;
+      } else if (chunk[i] == ',' && !quoted) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isBlank(byte[] chunk, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (chunk[i] != ' ' && chunk[i] != '\t') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int lastLineBreak(byte[] bytes, int end) {
+    for (int i = end - 1; i >= 0; i--) {
+      if (bytes[i] == '\n') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int lineBreaks(byte[] chunk) {
+    int count = 0;
+    for (byte b : chunk) {
+      if (b == '\n') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static Thread daemon(Runnable task) {
+    Thread thread = new Thread(task, "csv-import");
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  // The parsed rows of one chunk, in columns ready for ExpenseTrackerModel.addTransactions
+  private static final class Batch {
+    final double[] amounts;
+    final String[] categories;
+    final long[] times;
+    int count;
+    // The first rejected lines of the chunk, up to ImportResult.MAX_REPORTED
+    long[] rejectedLines = new long[0];
+    String[] reasons = new String[0];
+    int reported;
+    int rejected;
+
+    Batch(int lines) {
+      amounts = new double[lines];
+      categories = new String[lines];
+      times = new long[lines];
+    }
+
+    void add(double amount, String category, long time) {
+      amounts[count] = amount;
+      categories[count] = category;
+      times[count] = time;
+      count++;
+    }
+
+    void reject(long line, String reason) {
+      rejected++;
+      if (reported < ImportResult.MAX_REPORTED) {
+        if (reported == rejectedLines.length) {
+          int capacity = Math.min(ImportResult.MAX_REPORTED, Math.max(8, reported * 2));
+          rejectedLines = Arrays.copyOf(rejectedLines, capacity);
+          reasons = Arrays.copyOf(reasons, capacity);
+        }
+        rejectedLines[reported] = line;
+        reasons[reported] = reason;
+        reported++;
+      }
+    }
+  }
+
+}
@@ -1,29 +1,149 @@
 package controller;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import javax.swing.JOptionPane;
-
+import metrics.Metrics;
 import model.ExpenseTrackerModel;
 import model.Transaction;
+import model.TransactionListener;
+import model.TransactionSnapshot;
+import model.TransactionValidator;
 import model.Filter.TransactionFilter;
-import view.ExpenseTrackerView;
+import view.TransactionView;
 
+/**
+ * The controller only talks to the view through TransactionView, so it runs
+ * the same with the Swing view and with a HeadlessView on a server.
+ *
+ * The model calls its listeners on the thread that changed it, while holding
+ * its lock. The controller queues the changes and shows them on the view's
+ * thread, through the executor it was created with. Changes that arrive while
+ * a drain is pending are merged into it, the way TransactionFeed merges rows,
+ * so a burst of appends from a background thread becomes one table event.
+ */
 public class ExpenseTrackerController {
   
   private ExpenseTrackerModel model;
-  private ExpenseTrackerView view;
+  private TransactionView view;
   /** 
    * The Controller is applying the Strategy design pattern.
    * This is the has-a relationship with the Strategy class 
    * being used in the applyFilter method.
    */
   private TransactionFilter filter;
+  // Results of recently applied filters for the current version of the model
+  private final FilterCache filterCache = new FilterCache();
+  // The rows of the applied filter, kept up to date as the model changes
+  private LiveFilter liveFilter;
+  // While positive, model changes are not forwarded to the view, which is refreshed afterwards
+  private final AtomicInteger viewUpdatesSuspended = new AtomicInteger();
+  // Runs the updates of the view on its thread
+  private final Executor viewExecutor;
+  // Model changes the view does not show yet, in order
+  private final ArrayDeque<RowChange> viewChanges = new ArrayDeque<>();
+  private final AtomicBoolean viewDrainScheduled = new AtomicBoolean();
+  // Version of the rows shown by the last refresh; older changes are already shown
+  private volatile long refreshedVersion = -1;
+
+  /**
+   * Creates a controller that updates the view on the thread that changes the
+   * model. Use it when the model is only changed on the view's thread, e.g.
+   * with a HeadlessView.
+   */
+  public ExpenseTrackerController(ExpenseTrackerModel model, TransactionView view) {
+    this(model, view, Runnable::run);
+  }
 
-  public ExpenseTrackerController(ExpenseTrackerModel model, ExpenseTrackerView view) {
+  /**
+   * @param viewExecutor runs the updates of the view, e.g. SwingUtilities::invokeLater
+   *                     for a Swing view whose model is changed from other threads
+   */
+  public ExpenseTrackerController(ExpenseTrackerModel model, TransactionView view, Executor viewExecutor) {
+    if (viewExecutor == null) {
+      throw new IllegalArgumentException("The view executor must be non-null.");
+    }
     this.model = model;
     this.view = view;
+    this.viewExecutor = viewExecutor;
+    // Forward every change of the model to the view as row events,
+    // so the table is updated incrementally instead of being rebuilt.
+    model.addTransactionListener(new TransactionListener() {
+      @Override
+      public void transactionsInserted(int firstRow, int lastRow) {
+        queueViewChange(true, firstRow, lastRow);
+      }
+
+      @Override
+      public void transactionsRemoved(int firstRow, int lastRow) {
+        queueViewChange(false, firstRow, lastRow);
+      }
+    });
+  }
+
+  // Called by the model's listener, while the model's lock is held
+  private void queueViewChange(boolean inserted, int firstRow, int lastRow) {
+    if (viewUpdatesSuspended.get() > 0) {
+      return;
+    }
+    // A snapshot per change would make the next change copy the chunks it
+    // touches, so only the version is kept and the drain takes one snapshot
+    long version = model.getVersion();
+    synchronized (viewChanges) {
+      RowChange last = viewChanges.peekLast();
+      if (last == null || !last.merge(inserted, firstRow, lastRow, version)) {
+        viewChanges.add(new RowChange(inserted, firstRow, lastRow, version));
+      }
+    }
+    if (viewDrainScheduled.compareAndSet(false, true)) {
+      viewExecutor.execute(() -> {
+        // Cleared before draining, so changes made during the drain schedule another one
+        viewDrainScheduled.set(false);
+        drainViewChanges();
+      });
+    }
+  }
+
+  // Shows the queued changes, on the view's thread
+  private void drainViewChanges() {
+    TransactionSnapshot rows = model.getSnapshot();
+    long version = rows.getVersion();
+    RowChange first = null;
+    boolean several = false;
+    synchronized (viewChanges) {
+      // Later changes are not in the snapshot; they scheduled another drain
+      while (!viewChanges.isEmpty() && viewChanges.peek().lastVersion <= version) {
+        RowChange change = viewChanges.poll();
+        if (change.lastVersion <= refreshedVersion) {
+          // Already shown by a refresh
+          continue;
+        }
+        if (first == null) {
+          first = change;
+        } else {
+          several = true;
+        }
+      }
+    }
+    if (first == null) {
+      return;
+    }
+    long start = System.nanoTime();
+    if (several || first.firstVersion <= refreshedVersion || first.lastVersion != version) {
+      // The rows between the changes are not known, so the table is rebuilt once
+      refreshedVersion = version;
+      view.refreshTable(rows);
+    } else if (first.inserted) {
+      view.rowsInserted(rows, first.firstRow, first.lastRow);
+    } else {
+      view.rowsRemoved(rows, first.firstRow, first.lastRow);
+    }
+    Metrics.VIEW_UPDATE.recordSince(start);
   }
 
   public void setFilter(TransactionFilter filter) {
@@ -31,67 +151,153 @@ public class ExpenseTrackerController {
     this.filter = filter;
   }
 
+  public FilterCache getFilterCache() {
+    return filterCache;
+  }
+
   public void refresh() {
-    List<Transaction> transactions = model.getTransactions();
+    long start = System.nanoTime();
+    TransactionSnapshot transactions = model.getSnapshot();
+    refreshedVersion = transactions.getVersion();
+    long viewStart = System.nanoTime();
     view.refreshTable(transactions);
+    Metrics.VIEW_REFRESH.recordSince(viewStart);
+    Metrics.REFRESH.recordSince(start);
   }
 
   public boolean addTransaction(double amount, String category) {
-    if (!InputValidation.isValidAmount(amount)) {
+    long start = System.nanoTime();
+    // The model's rules include the categories registered with it
+    TransactionValidator validator = model.getValidator();
+    if (!validator.isValidAmount(amount)) {
       return false;
     }
-    if (!InputValidation.isValidCategory(category)) {
+    if (!validator.isValidCategory(category)) {
       return false;
     }
     
-    Transaction t = new Transaction(amount, category);
+    Transaction t = new Transaction(amount, category, validator);
+    // The model notifies the view about the new row
     model.addTransaction(t);
-    view.getTableModel().addRow(new Object[]{t.getAmount(), t.getCategory(), t.getTimestamp()});
-    refresh();
+    Metrics.ADD_TRANSACTION.recordSince(start);
     return true;
   }
 
+  /**
+   * Imports the transactions of a CSV file, see CsvImporter. Can be called from
+   * a background thread. The table is not updated per batch but refreshed once
+   * through the view executor when the import is done.
+   */
+  public ImportResult importTransactions(Path file) throws IOException {
+    viewUpdatesSuspended.incrementAndGet();
+    try {
+      return new CsvImporter(model).importFile(file);
+    } finally {
+      viewExecutor.execute(() -> {
+        viewUpdatesSuspended.decrementAndGet();
+        refresh();
+      });
+    }
+  }
+
+  /**
+   * Exports the transactions matching the filter, or all of them if it is null,
+   * to a CSV file that importTransactions can read.
+   *
+   * @return the number of exported transactions
+   */
+  public int exportTransactions(Path file, TransactionFilter filter) throws IOException {
+    return new CsvExporter(model).export(file, filter);
+  }
+
   public void undoTransaction(){
-    model.undo();
-    refresh();
+    long start = System.nanoTime();
+    if (model.undo()) {
+      Metrics.UNDO_TRANSACTION.recordSince(start);
+    }
+  }
+
+  public void redoTransaction(){
+    long start = System.nanoTime();
+    if (model.redo()) {
+      Metrics.REDO_TRANSACTION.recordSince(start);
+    }
   }
 
   public void handleSelectedRows() {
+    long start = System.nanoTime();
     int[] selectedRows = view.getSelectedRows();
     if (selectedRows.length > 0) {
+        // The selected rows refer to the table as displayed before any removal
+        List<Transaction> transactions = model.getTransactions();
         for (int selectedRow : selectedRows) {
-            Transaction selectedTransaction = model.getTransactions().get(selectedRow);
-            // Display a confirmation dialog for each selected transaction
-            String d = "" + "\n" + selectedTransaction.getAmount() + "\n" + selectedTransaction.getCategory() + "\n" + selectedTransaction.getTimestamp(); 
-            int option = JOptionPane.showConfirmDialog(view,
-                    "Do you want to remove the selected transaction?" + d, "Confirm Removal",
-                    JOptionPane.YES_NO_OPTION);
-            if (option == JOptionPane.YES_OPTION) {
+            if (selectedRow >= transactions.size()) {
+                // The total row is not a transaction
+                continue;
+            }
+            Transaction selectedTransaction = transactions.get(selectedRow);
+            // Ask the view to confirm each selected transaction
+            if (view.confirmRemoval(selectedTransaction)) {
                 model.removeTransaction(selectedTransaction);
             }
         }
-        refresh(); // Refresh the view after handling the selected rows
     }
+    Metrics.HANDLE_SELECTED_ROWS.recordSince(start);
 }
 
   public void applyFilter() {
     //null check for filter
     if(filter!=null){
-      // Use the Strategy class to perform the desired filtering
-      List<Transaction> transactions = model.getTransactions();
-      List<Transaction> filteredTransactions = filter.filter(transactions);
-      List<Integer> rowIndexes = new ArrayList<>();
-      for (Transaction t : filteredTransactions) {
-        int rowIndex = transactions.indexOf(t);
-        if (rowIndex != -1) {
-          rowIndexes.add(rowIndex);
+      // Use the Strategy class to perform the desired filtering.
+      // The highlight follows later adds, removals and undos.
+      long start = System.nanoTime();
+      // The live filter of an equal filter is up to date, so it is reused
+      if (liveFilter == null || !liveFilter.getFilter().equals(filter)) {
+        if (liveFilter != null) {
+          liveFilter.close();
         }
+        liveFilter = new LiveFilter(model, filter, filterCache);
       }
-      view.highlightRows(rowIndexes);
+      view.highlightRows(liveFilter::matches);
+      Metrics.APPLY_FILTER.recordSince(start);
     }
     else{
-      JOptionPane.showMessageDialog(view, "No filter applied");
-      view.toFront();}
+      view.showMessage("No filter applied");}
+
+  }
+
+  // Rows inserted or removed at firstRow..lastRow, and the model versions after the change
+  private static final class RowChange {
+    private final boolean inserted;
+    private final int firstRow;
+    private int lastRow;
+    // Versions of the model after the first and the last of the merged changes
+    private final long firstVersion;
+    private long lastVersion;
 
+    RowChange(boolean inserted, int firstRow, int lastRow, long version) {
+      this.inserted = inserted;
+      this.firstRow = firstRow;
+      this.lastRow = lastRow;
+      this.firstVersion = version;
+      this.lastVersion = version;
+    }
+
+    // Merges the next change if it continues this one: an insertion right
+    // after the inserted rows, or a removal of the rows after the removed ones
+    boolean merge(boolean inserted, int firstRow, int lastRow, long version) {
+      if (inserted != this.inserted) {
+        return false;
+      }
+      if (inserted && firstRow == this.lastRow + 1) {
+        this.lastRow = lastRow;
+      } else if (!inserted && firstRow == this.firstRow) {
+        this.lastRow += lastRow - firstRow + 1;
+      } else {
+        return false;
+      }
+      this.lastVersion = version;
+      return true;
+    }
   }
 }
@@ -0,0 +1,110 @@
+package controller;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import model.TransactionSnapshot;
+import model.Filter.TransactionFilter;
+
+/**
+ * Caches the matching rows of filters, keyed by the filter's value (see the
+ * filters' equals) and the modification version of the model.
+ *
+ * Any add, remove or undo changes the version, so results of an older version
+ * are never returned; the first lookup with a new version drops them all.
+ * Within one version the least recently used results are evicted when the
+ * cache holds more than maxEntries results or more than maxRows rows in total.
+ *
+ * Versions are counted per model, so a cache must only be used with the
+ * snapshots of one model. The returned arrays are shared between callers and
+ * must not be modified.
+ */
+public class FilterCache implements FilterCacheMXBean {
+
+  public static final int DEFAULT_MAX_ENTRIES = 16;
+  public static final long DEFAULT_MAX_ROWS = 1 << 22;
+
+  private final int maxEntries;
+  private final long maxRows;
+  // In access order, so the first entry is the least recently used one
+  private final LinkedHashMap<TransactionFilter, int[]> results = new LinkedHashMap<>(16, 0.75f, true);
+  private long version = -1;
+  private long cachedRows;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  public FilterCache() {
+    this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_ROWS);
+  }
+
+  public FilterCache(int maxEntries, long maxRows) {
+    if (maxEntries <= 0 || maxRows <= 0) {
+      throw new IllegalArgumentException("Invalid cache size");
+    }
+    this.maxEntries = maxEntries;
+    this.maxRows = maxRows;
+  }
+
+  /**
+   * @return the sorted positions of the rows of the snapshot matching the filter
+   */
+  public int[] filterRows(TransactionFilter filter, TransactionSnapshot snapshot) {
+    synchronized (this) {
+      if (snapshot.getVersion() == version) {
+        int[] rows = results.get(filter);
+        if (rows != null) {
+          hits.increment();
+          return rows;
+        }
+      }
+    }
+    misses.increment();
+    // Filtered without the lock, so a slow filter does not block the hits
+    int[] rows = filter.filterRows(snapshot);
+    synchronized (this) {
+      if (snapshot.getVersion() > version) {
+        results.clear();
+        cachedRows = 0;
+        version = snapshot.getVersion();
+      }
+      if (snapshot.getVersion() == version && rows.length <= maxRows) {
+        int[] previous = results.put(filter, rows);
+        cachedRows += rows.length - (previous == null ? 0 : previous.length);
+        evict();
+      }
+    }
+    return rows;
+  }
+
+  private void evict() {
+    Iterator<Map.Entry<TransactionFilter, int[]>> eldest = results.entrySet().iterator();
+    while (results.size() > maxEntries || cachedRows > maxRows) {
+      cachedRows -= eldest.next().getValue().length;
+      eldest.remove();
+    }
+  }
+
+  @Override
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  @Override
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  @Override
+  public synchronized int getSize() {
+    return results.size();
+  }
+
+  @Override
+  public synchronized void clear() {
+    results.clear();
+    cachedRows = 0;
+  }
+
+}
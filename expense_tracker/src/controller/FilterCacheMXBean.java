@@ -0,0 +1,16 @@
+package controller;
+
+/**
+ * The JMX view of a FilterCache.
+ */
+public interface FilterCacheMXBean {
+
+  long getHitCount();
+
+  long getMissCount();
+
+  int getSize();
+
+  void clear();
+
+}
@@ -0,0 +1,77 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a CSV import: the number of imported rows and the rejected lines.
+ * Every rejected line is counted, but only the first MAX_REPORTED ones are
+ * kept with their reason, so a broken file cannot fill the heap.
+ */
+public class ImportResult {
+
+  public static final int MAX_REPORTED = 1000;
+
+  private long imported;
+  private long rejected;
+  private final List<Rejection> rejections = new ArrayList<>();
+
+  void addImported(int rows) {
+    imported += rows;
+  }
+
+  void addRejection(long line, String reason) {
+    rejected++;
+    if (rejections.size() < MAX_REPORTED) {
+      rejections.add(new Rejection(line, reason));
+    }
+  }
+
+  // Counts rejected lines whose reasons are not kept
+  void addRejected(long lines) {
+    rejected += lines;
+  }
+
+  public long getImported() {
+    return imported;
+  }
+
+  public long getRejected() {
+    return rejected;
+  }
+
+  /**
+   * @return the first MAX_REPORTED rejected lines, in file order
+   */
+  public List<Rejection> getRejections() {
+    return Collections.unmodifiableList(rejections);
+  }
+
+  public static class Rejection {
+    private final long line;
+    private final String reason;
+
+    Rejection(long line, String reason) {
+      this.line = line;
+      this.reason = reason;
+    }
+
+    /**
+     * @return the 1-based line number in the file
+     */
+    public long getLine() {
+      return line;
+    }
+
+    public String getReason() {
+      return reason;
+    }
+
+    @Override
+    public String toString() {
+      return "Line " + line + ": " + reason;
+    }
+  }
+
+}
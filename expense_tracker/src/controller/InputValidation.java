@@ -1,47 +1,38 @@
 package controller;
 
-import java.util.Arrays;
-
+import model.TransactionValidator;
+
+/**
+ * Validation of user input. The rules come from a TransactionValidator, which
+ * can be replaced to allow other categories or amount bounds. Categories
+ * registered with ExpenseTrackerModel.registerCategory only extend the rules
+ * of that model.
+ */
 public class InputValidation {
 
-  public static boolean isValidAmount(double amount) {
-    
-    // Check range
-    if(amount >1000) {
-      return false;
-    }
-    if (amount < 0){
-      return false;
-    }
-    if (amount == 0){
-      return false;
-    }
-    return true;
-  }
-
-  public static boolean isValidCategory(String category) {
+  private static volatile TransactionValidator validator = TransactionValidator.DEFAULT;
 
-    if(category == null) {
-      return false; 
-    }
-  
-    if(category.trim().isEmpty()) {
-      return false;
-    }
+  public static TransactionValidator getValidator() {
+    return validator;
+  }
 
-    if(!category.matches("[a-zA-Z]+")) {
-      return false;
+  /**
+   * Replaces the rules used by the Transaction and filter constructors that
+   * are not given a validator.
+   */
+  public static void setValidator(TransactionValidator validator) {
+    if (validator == null) {
+      throw new IllegalArgumentException("The validator must be non-null.");
     }
+    InputValidation.validator = validator;
+  }
 
-    String[] validWords = {"food", "travel", "bills", "entertainment", "other"};
+  public static boolean isValidAmount(double amount) {
+    return validator.isValidAmount(amount);
+  }
 
-    if(!Arrays.asList(validWords).contains(category.toLowerCase())) {
-      // invalid word  
-      return false;
-    }
-  
-    return true;
-  
+  public static boolean isValidCategory(String category) {
+    return validator.isValidCategory(category);
   }
 
-}
\ No newline at end of file
+}
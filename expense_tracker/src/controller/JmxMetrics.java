@@ -0,0 +1,120 @@
+package controller;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import metrics.LatencyRecorder;
+import metrics.Metrics;
+import model.ExpenseTrackerModel;
+
+/**
+ * Publishes the latency recorders of Metrics and the gauges of the model over
+ * JMX.
+ *
+ * register publishes one MBean per recorder, named
+ * expensetracker:type=Operation,name=&lt;operation&gt;, and the gauges of a model
+ * as expensetracker:type=Model, in the platform MBean server. A filter cache
+ * can be published as expensetracker:type=FilterCache.
+ */
+public final class JmxMetrics {
+
+  private JmxMetrics() {
+  }
+
+  /**
+   * Publishes the recorders and the gauges of the model in the platform MBean
+   * server, replacing those of a previously registered model.
+   */
+  public static synchronized void register(ExpenseTrackerModel model) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      for (LatencyRecorder recorder : Metrics.recorders()) {
+        ObjectName name = Metrics.operationName(recorder);
+        if (!server.isRegistered(name)) {
+          server.registerMBean(recorder, name);
+        }
+      }
+      ObjectName name = modelName();
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(new ModelMetrics(model), name);
+    } catch (JMException e) {
+      throw new IllegalStateException("Cannot register the metrics", e);
+    }
+  }
+
+  /**
+   * Publishes the hit and miss counts of the filter cache, replacing a
+   * previously registered cache.
+   */
+  public static synchronized void register(FilterCache cache) {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      ObjectName name = filterCacheName();
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(cache, name);
+    } catch (JMException e) {
+      throw new IllegalStateException("Cannot register the metrics", e);
+    }
+  }
+
+  /**
+   * Removes the MBeans published by register.
+   */
+  public static synchronized void unregister() {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      for (LatencyRecorder recorder : Metrics.recorders()) {
+        ObjectName name = Metrics.operationName(recorder);
+        if (server.isRegistered(name)) {
+          server.unregisterMBean(name);
+        }
+      }
+      for (ObjectName name : new ObjectName[] {modelName(), filterCacheName()}) {
+        if (server.isRegistered(name)) {
+          server.unregisterMBean(name);
+        }
+      }
+    } catch (JMException e) {
+      throw new IllegalStateException("Cannot unregister the metrics", e);
+    }
+  }
+
+  static ObjectName modelName() throws JMException {
+    return new ObjectName(Metrics.DOMAIN + ":type=Model");
+  }
+
+  static ObjectName filterCacheName() throws JMException {
+    return new ObjectName(Metrics.DOMAIN + ":type=FilterCache");
+  }
+
+  private static final class ModelMetrics implements ModelMetricsMXBean {
+    private final ExpenseTrackerModel model;
+
+    ModelMetrics(ExpenseTrackerModel model) {
+      this.model = model;
+    }
+
+    @Override
+    public int getRowCount() {
+      return model.getTransactionCount();
+    }
+
+    @Override
+    public int getUndoDepth() {
+      return model.getUndoDepth();
+    }
+
+    @Override
+    public long getMemoryFootprint() {
+      return model.getMemoryFootprint();
+    }
+  }
+
+}
@@ -0,0 +1,257 @@
+package controller;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+import model.ExpenseTrackerModel;
+import model.TransactionListener;
+import model.TransactionSnapshot;
+import model.Filter.TransactionFilter;
+
+/**
+ * The rows of a model that match a filter, kept up to date as the model
+ * changes instead of being recomputed.
+ *
+ * The matching row positions are kept in a bit set. When rows are inserted,
+ * only the new rows are tested; when rows are removed, their bits are
+ * dropped. The bits after the changed rows are shifted 64 positions per word
+ * operation, so appends and removals of the last rows cost O(1), and other
+ * changes cost a word copy instead of a filter evaluation per row. Filters
+ * whose matches depend on other rows (see TransactionFilter.isRowLocal) are
+ * recomputed on every change.
+ *
+ * The rows are tested on the thread that changes the model, while the
+ * model's lock is held. Reads can come from any thread.
+ */
+public class LiveFilter implements AutoCloseable {
+
+  private final ExpenseTrackerModel model;
+  private final TransactionFilter filter;
+  private final boolean incremental;
+  private final TransactionListener listener = new TransactionListener() {
+    @Override
+    public void transactionsInserted(int firstRow, int lastRow) {
+      TransactionSnapshot snapshot = model.getSnapshot();
+      if (!incremental) {
+        apply(new Change(snapshot.size(), filter.filterRows(snapshot)));
+        return;
+      }
+      IntPredicate predicate = filter.compile(snapshot);
+      int[] matches = new int[lastRow - firstRow + 1];
+      int found = 0;
+      for (int row = firstRow; row <= lastRow; row++) {
+        if (predicate.test(row)) {
+          matches[found++] = row;
+        }
+      }
+      apply(new Change(firstRow, lastRow - firstRow + 1, Arrays.copyOf(matches, found)));
+    }
+
+    @Override
+    public void transactionsRemoved(int firstRow, int lastRow) {
+      if (!incremental) {
+        TransactionSnapshot snapshot = model.getSnapshot();
+        apply(new Change(snapshot.size(), filter.filterRows(snapshot)));
+        return;
+      }
+      apply(new Change(firstRow, -(lastRow - firstRow + 1), null));
+    }
+  };
+
+  // Bit per row of the model, set for the matching rows
+  private long[] words = new long[1];
+  private int size;
+  private int count;
+  // Changes made while the initial rows were computed, applied after them
+  private ArrayDeque<Change> pending = new ArrayDeque<>();
+
+  public LiveFilter(ExpenseTrackerModel model, TransactionFilter filter) {
+    this(model, filter, null);
+  }
+
+  /**
+   * @param cache used for the initial rows, or null
+   */
+  public LiveFilter(ExpenseTrackerModel model, TransactionFilter filter, FilterCache cache) {
+    if (model == null || filter == null) {
+      throw new IllegalArgumentException("The model and the filter must be non-null.");
+    }
+    this.model = model;
+    this.filter = filter;
+    this.incremental = filter.isRowLocal();
+    // The changes after the snapshot are queued until its rows are known
+    TransactionSnapshot snapshot = model.subscribe(listener);
+    int[] rows = cache == null ? filter.filterRows(snapshot) : cache.filterRows(filter, snapshot);
+    synchronized (this) {
+      reset(snapshot.size(), rows);
+      for (Change change : pending) {
+        change.applyTo(this);
+      }
+      pending = null;
+    }
+  }
+
+  public TransactionFilter getFilter() {
+    return filter;
+  }
+
+  /**
+   * @return true if the row at the given position of the model matches
+   */
+  public synchronized boolean matches(int row) {
+    return row >= 0 && row < size && (words[row >>> 6] & (1L << row)) != 0;
+  }
+
+  /**
+   * @return the number of matching rows
+   */
+  public synchronized int count() {
+    return count;
+  }
+
+  /**
+   * @return the sorted positions of the matching rows
+   */
+  public synchronized int[] rows() {
+    int[] rows = new int[count];
+    int found = 0;
+    for (int i = 0; i < words.length && found < count; i++) {
+      for (long word = words[i]; word != 0; word &= word - 1) {
+        rows[found++] = (i << 6) + Long.numberOfTrailingZeros(word);
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Stops following the model.
+   */
+  @Override
+  public void close() {
+    model.removeTransactionListener(listener);
+  }
+
+  private synchronized void apply(Change change) {
+    if (pending != null) {
+      pending.add(change);
+    } else {
+      change.applyTo(this);
+    }
+  }
+
+  private void reset(int size, int[] rows) {
+    words = new long[(size >>> 6) + 1];
+    this.size = size;
+    for (int row : rows) {
+      words[row >>> 6] |= 1L << row;
+    }
+    count = rows.length;
+  }
+
+  // Makes room for count unset bits at position at
+  private void insert(int at, int count) {
+    int newSize = size + count;
+    if ((newSize >>> 6) + 1 > words.length) {
+      words = Arrays.copyOf(words, Math.max((newSize >>> 6) + 1, words.length * 2));
+    }
+    if (at < size) {
+      long[] tail = bits(at, size - at);
+      clearFrom(at);
+      or(tail, at + count, size - at);
+    }
+    size = newSize;
+  }
+
+  // Drops the count bits at position at
+  private void remove(int at, int count) {
+    long[] removed = bits(at, count);
+    for (long word : removed) {
+      this.count -= Long.bitCount(word);
+    }
+    int tailLength = size - at - count;
+    long[] tail = bits(at + count, tailLength);
+    clearFrom(at);
+    or(tail, at, tailLength);
+    size -= count;
+  }
+
+  // The length bits from position from, packed from bit 0
+  private long[] bits(int from, int length) {
+    long[] bits = new long[(length + 63) >>> 6];
+    for (int i = 0; i < bits.length; i++) {
+      int position = from + (i << 6);
+      int word = position >>> 6;
+      int shift = position & 63;
+      long value = words[word] >>> shift;
+      if (shift != 0 && word + 1 < words.length) {
+        value |= words[word + 1] << (64 - shift);
+      }
+      int remaining = length - (i << 6);
+      if (remaining < 64) {
+        value &= (1L << remaining) - 1;
+      }
+      bits[i] = value;
+    }
+    return bits;
+  }
+
+  // Sets the length packed bits at position at, which are clear
+  private void or(long[] bits, int at, int length) {
+    for (int i = 0; i < bits.length; i++) {
+      int position = at + (i << 6);
+      int word = position >>> 6;
+      int shift = position & 63;
+      words[word] |= bits[i] << shift;
+      if (shift != 0 && word + 1 < words.length) {
+        words[word + 1] |= bits[i] >>> (64 - shift);
+      }
+    }
+  }
+
+  private void clearFrom(int position) {
+    int word = position >>> 6;
+    // The shift is modulo 64, so this keeps the bits of the word below position
+    words[word] &= (1L << position) - 1;
+    // The words after the last row are clear already
+    Arrays.fill(words, word + 1, Math.min(words.length, (size >>> 6) + 1), 0);
+  }
+
+  // One change of the model: inserted or removed rows, or all rows for a recomputed filter
+  private static final class Change {
+    private final int first;
+    // Positive for inserted rows, negative for removed rows
+    private final int delta;
+    private final int[] rows;
+    private final int size;
+
+    Change(int first, int delta, int[] matches) {
+      this.first = first;
+      this.delta = delta;
+      this.rows = matches;
+      this.size = -1;
+    }
+
+    Change(int size, int[] rows) {
+      this.first = -1;
+      this.delta = 0;
+      this.rows = rows;
+      this.size = size;
+    }
+
+    void applyTo(LiveFilter live) {
+      if (size != -1) {
+        live.reset(size, rows);
+      } else if (delta > 0) {
+        live.insert(first, delta);
+        for (int row : rows) {
+          live.words[row >>> 6] |= 1L << row;
+        }
+        live.count += rows.length;
+      } else {
+        live.remove(first, -delta);
+      }
+    }
+  }
+
+}
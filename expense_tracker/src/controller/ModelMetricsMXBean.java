@@ -0,0 +1,17 @@
+package controller;
+
+/**
+ * The JMX view of the gauges of an ExpenseTrackerModel.
+ */
+public interface ModelMetricsMXBean {
+
+  int getRowCount();
+
+  int getUndoDepth();
+
+  /**
+   * @return an estimate of the bytes held by the rows, indexes, aggregates, rollups and undo history
+   */
+  long getMemoryFootprint();
+
+}
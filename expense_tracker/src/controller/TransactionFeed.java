@@ -0,0 +1,175 @@
+package controller;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+
+import model.ExpenseTrackerModel;
+import model.TransactionValidator;
+
+/**
+ * Write path for background producers such as imports and feeds.
+ *
+ * Producers submit rows into one of several striped buffers, so threads rarely
+ * wait on each other and never on the model. The buffered rows are moved into
+ * the model in batches by a drain that runs on the Swing event dispatch thread.
+ * Submissions that arrive while a drain is pending are coalesced into it, so
+ * the table sees one batched insertion instead of one event per row.
+ *
+ * Rows of the same producer thread keep their order; rows of different
+ * producers are interleaved in drain order.
+ */
+public class TransactionFeed {
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  private final ExpenseTrackerModel model;
+  private final Executor drainExecutor;
+  private final Stripe[] stripes;
+  private final int stripeMask;
+  private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+  // Batch buffers of the drain, only used while holding the drain lock
+  private final Object drainLock = new Object();
+  private double[] batchAmounts = new double[INITIAL_CAPACITY];
+  private String[] batchCategories = new String[INITIAL_CAPACITY];
+  private long[] batchTimes = new long[INITIAL_CAPACITY];
+
+  public TransactionFeed(ExpenseTrackerModel model) {
+    this(model, SwingUtilities::invokeLater, Runtime.getRuntime().availableProcessors() * 2);
+  }
+
+  /**
+   * @param drainExecutor runs the drains; the view must only be updated from the
+   *                      thread it uses
+   * @param stripes the number of buffers producers are spread over, rounded up to
+   *                a power of two
+   */
+  public TransactionFeed(ExpenseTrackerModel model, Executor drainExecutor, int stripes) {
+    if (model == null || drainExecutor == null) {
+      throw new IllegalArgumentException("The model and the executor must be non-null.");
+    }
+    if (stripes <= 0) {
+      throw new IllegalArgumentException("Invalid number of stripes: " + stripes);
+    }
+    this.model = model;
+    this.drainExecutor = drainExecutor;
+    int count = Integer.highestOneBit(stripes);
+    if (count < stripes) {
+      count <<= 1;
+    }
+    this.stripes = new Stripe[count];
+    for (int i = 0; i < count; i++) {
+      this.stripes[i] = new Stripe();
+    }
+    this.stripeMask = count - 1;
+  }
+
+  public void submit(double amount, String category) {
+    submit(amount, category, System.currentTimeMillis());
+  }
+
+  /**
+   * Buffers a transaction for the next drain. Can be called from any thread.
+   */
+  public void submit(double amount, String category, long time) {
+    TransactionValidator validator = model.getValidator();
+    if (!validator.isValidAmount(amount)) {
+      throw new IllegalArgumentException("The amount is not valid.");
+    }
+    if (!validator.isValidCategory(category)) {
+      throw new IllegalArgumentException("The category is not valid.");
+    }
+    int stripe = (int) Thread.currentThread().getId() & stripeMask;
+    stripes[stripe].add(amount, category, time);
+    if (drainScheduled.compareAndSet(false, true)) {
+      drainExecutor.execute(() -> {
+        // Cleared before draining, so rows submitted during the drain schedule another one
+        drainScheduled.set(false);
+        drain();
+      });
+    }
+  }
+
+  /**
+   * @return the number of submitted rows that have not been drained yet
+   */
+  public int pending() {
+    int pending = 0;
+    for (Stripe stripe : stripes) {
+      pending += stripe.size();
+    }
+    return pending;
+  }
+
+  /**
+   * Moves all buffered rows into the model as one batch.
+   *
+   * @return the number of rows added
+   */
+  public int drain() {
+    synchronized (drainLock) {
+      int count = 0;
+      for (Stripe stripe : stripes) {
+        count = stripe.takeInto(this, count);
+      }
+      if (count > 0) {
+        model.addTransactions(batchAmounts, batchCategories, batchTimes, count);
+        Arrays.fill(batchCategories, 0, count, null);
+      }
+      return count;
+    }
+  }
+
+  // Called by a stripe during drain to make room for its rows
+  private void ensureBatchCapacity(int capacity) {
+    if (capacity > batchAmounts.length) {
+      int length = Math.max(capacity, batchAmounts.length * 2);
+      batchAmounts = Arrays.copyOf(batchAmounts, length);
+      batchCategories = Arrays.copyOf(batchCategories, length);
+      batchTimes = Arrays.copyOf(batchTimes, length);
+    }
+  }
+
+  // Buffer of one stripe, in parallel columns like the store
+  private static final class Stripe {
+    private double[] amounts = new double[INITIAL_CAPACITY];
+    private String[] categories = new String[INITIAL_CAPACITY];
+    private long[] times = new long[INITIAL_CAPACITY];
+    private int size;
+
+    synchronized void add(double amount, String category, long time) {
+      if (size == amounts.length) {
+        amounts = Arrays.copyOf(amounts, size * 2);
+        categories = Arrays.copyOf(categories, size * 2);
+        times = Arrays.copyOf(times, size * 2);
+      }
+      amounts[size] = amount;
+      categories[size] = category;
+      times[size] = time;
+      size++;
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    // Copies the buffered rows into the feed's batch at the given offset and empties the stripe
+    synchronized int takeInto(TransactionFeed feed, int offset) {
+      if (size == 0) {
+        return offset;
+      }
+      feed.ensureBatchCapacity(offset + size);
+      System.arraycopy(amounts, 0, feed.batchAmounts, offset, size);
+      System.arraycopy(categories, 0, feed.batchCategories, offset, size);
+      System.arraycopy(times, 0, feed.batchTimes, offset, size);
+      Arrays.fill(categories, 0, size, null);
+      int end = offset + size;
+      size = 0;
+      return end;
+    }
+  }
+
+}
@@ -0,0 +1,148 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the calls of one operation and keeps a histogram of their latencies.
+ *
+ * Recording takes no lock: the count, the total and every bucket are
+ * LongAdders, which spread concurrent updates over striped cells. The buckets
+ * are log-linear, 8 per power of two, so a bucket is at most 12.5% wide
+ * relative to its values and 488 buckets cover every positive long. Reads sum
+ * the cells, so they can miss updates that happen while they run.
+ */
+public final class LatencyRecorder implements LatencyRecorderMXBean {
+
+  // Buckets per power of two, as a number of bits
+  private static final int SUB_BITS = 3;
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  private static final int BUCKET_COUNT = (64 - SUB_BITS) * SUB_COUNT;
+
+  private final String name;
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+  private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+
+  public LatencyRecorder(String name) {
+    this.name = name;
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Records one call that took the given time since start, from System.nanoTime.
+   */
+  public void recordSince(long start) {
+    record(System.nanoTime() - start);
+  }
+
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    count.increment();
+    totalNanos.add(nanos);
+    maxNanos.accumulate(nanos);
+    buckets[bucket(nanos)].increment();
+  }
+
+  @Override
+  public long getCount() {
+    return count.sum();
+  }
+
+  @Override
+  public long getTotalNanos() {
+    return totalNanos.sum();
+  }
+
+  @Override
+  public double getMeanNanos() {
+    long count = getCount();
+    return count == 0 ? 0 : (double) getTotalNanos() / count;
+  }
+
+  @Override
+  public long getMaxNanos() {
+    return maxNanos.get();
+  }
+
+  @Override
+  public long getP50Nanos() {
+    return percentile(0.5);
+  }
+
+  @Override
+  public long getP90Nanos() {
+    return percentile(0.9);
+  }
+
+  @Override
+  public long getP99Nanos() {
+    return percentile(0.99);
+  }
+
+  @Override
+  public long getP999Nanos() {
+    return percentile(0.999);
+  }
+
+  /**
+   * @return an upper bound of the latency of the given fraction of the calls,
+   *         or 0 if there were none
+   */
+  public long percentile(double fraction) {
+    long[] counts = new long[BUCKET_COUNT];
+    long total = 0;
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = buckets[i].sum();
+      total += counts[i];
+    }
+    long rank = (long) Math.ceil(fraction * total);
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank && counts[i] > 0) {
+        return Math.min(upperBound(i), getMaxNanos());
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public void reset() {
+    count.reset();
+    totalNanos.reset();
+    maxNanos.reset();
+    for (LongAdder bucket : buckets) {
+      bucket.reset();
+    }
+  }
+
+  static int bucket(long nanos) {
+    if (nanos < SUB_COUNT) {
+      return (int) nanos;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+    return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+  }
+
+  // The largest value that falls into the bucket
+  static long upperBound(int bucket) {
+    if (bucket < SUB_COUNT) {
+      return bucket;
+    }
+    int shift = bucket / SUB_COUNT - 1;
+    long first = (long) (SUB_COUNT + bucket % SUB_COUNT) << shift;
+    return first + (1L << shift) - 1;
+  }
+
+}
@@ -0,0 +1,27 @@
+package metrics;
+
+/**
+ * The JMX view of a LatencyRecorder. Latencies are in nanoseconds; the
+ * percentiles are upper bounds within 12.5% of the recorded values.
+ */
+public interface LatencyRecorderMXBean {
+
+  long getCount();
+
+  long getTotalNanos();
+
+  double getMeanNanos();
+
+  long getMaxNanos();
+
+  long getP50Nanos();
+
+  long getP90Nanos();
+
+  long getP99Nanos();
+
+  long getP999Nanos();
+
+  void reset();
+
+}
@@ -0,0 +1,41 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Secondary index from a category code to the ids of its rows.
+ *
+ * Codes come from the CategoryRegistry, which already merges spellings that
+ * only differ in case, so the index never looks at a string.
+ */
+class CategoryIndex {
+
+  private RowIdSet[] rowsByCode = new RowIdSet[8];
+
+  void add(int code, long id) {
+    if (code >= rowsByCode.length) {
+      rowsByCode = Arrays.copyOf(rowsByCode, Math.max(code + 1, rowsByCode.length * 2));
+    }
+    if (rowsByCode[code] == null) {
+      rowsByCode[code] = new RowIdSet();
+    }
+    rowsByCode[code].add(id);
+  }
+
+  void remove(int code, long id) {
+    rowsByCode[code].remove(id);
+  }
+
+  /**
+   * @return the ids of the rows in the category, or null if it has no rows
+   */
+  RowIdSet rows(int code) {
+    return code >= 0 && code < rowsByCode.length ? rowsByCode[code] : null;
+  }
+
+  int count(int code) {
+    RowIdSet rows = rows(code);
+    return rows == null ? 0 : rows.size();
+  }
+
+}
@@ -0,0 +1,129 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Dictionary that interns categories to small dense integer codes.
+ *
+ * Case is normalized once, when a category is interned: spellings that only
+ * differ in case get the same code and share one lower-case name. Lookups
+ * hash and compare the characters with case folding, so they do not allocate.
+ * Codes are never reused or reassigned, which lets the columns, indexes,
+ * aggregates and the transaction log store codes instead of strings.
+ *
+ * The registry is not synchronized; the store guards it with its lock.
+ */
+public final class CategoryRegistry {
+
+  // Append-only, so snapshots can share it; grown into a new array
+  private String[] names = new String[8];
+  private int size;
+  // Codes by hash slot, -1 for empty slots
+  private int[] table = newTable(16);
+
+  /**
+   * @return the code of the category, registering it if it is new
+   */
+  public int intern(String category) {
+    int code = code(category);
+    if (code != -1) {
+      return code;
+    }
+    if (category == null || category.isEmpty()) {
+      throw new IllegalArgumentException("The category must be non-empty.");
+    }
+    char[] name = new char[category.length()];
+    for (int i = 0; i < name.length; i++) {
+      name[i] = Character.toLowerCase(category.charAt(i));
+    }
+    if (size == names.length) {
+      names = Arrays.copyOf(names, size * 2);
+    }
+    code = size;
+    names[size++] = new String(name);
+    if (size * 2 > table.length) {
+      rehash(table.length * 2);
+    } else {
+      insert(code);
+    }
+    return code;
+  }
+
+  /**
+   * @return the code of the category (ignoring case), or -1 if it is not registered
+   */
+  public int code(String category) {
+    if (category == null) {
+      return -1;
+    }
+    int mask = table.length - 1;
+    for (int slot = hash(category) & mask; table[slot] != -1; slot = (slot + 1) & mask) {
+      if (matches(names[table[slot]], category)) {
+        return table[slot];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the normalized (lower case) name of the code
+   */
+  public String name(int code) {
+    if (code < 0 || code >= size) {
+      throw new IndexOutOfBoundsException("Category code: " + code);
+    }
+    return names[code];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  // The names array shared with snapshots; only the first size entries are used
+  String[] names() {
+    return names;
+  }
+
+  private void rehash(int capacity) {
+    table = newTable(capacity);
+    for (int code = 0; code < size; code++) {
+      insert(code);
+    }
+  }
+
+  private void insert(int code) {
+    int mask = table.length - 1;
+    int slot = hash(names[code]) & mask;
+    while (table[slot] != -1) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = code;
+  }
+
+  private static int[] newTable(int capacity) {
+    int[] table = new int[capacity];
+    Arrays.fill(table, -1);
+    return table;
+  }
+
+  private static int hash(String category) {
+    int hash = 0;
+    for (int i = 0; i < category.length(); i++) {
+      hash = 31 * hash + Character.toLowerCase(category.charAt(i));
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  private static boolean matches(String name, String category) {
+    if (name.length() != category.length()) {
+      return false;
+    }
+    for (int i = 0; i < name.length(); i++) {
+      if (name.charAt(i) != Character.toLowerCase(category.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -0,0 +1,43 @@
+package model;
+
+/**
+ * Aggregates of the transactions in one category, as maintained by the model.
+ * Min and max are NaN while the category has no transactions.
+ */
+public class CategorySummary {
+
+  private final String category;
+  private final int count;
+  private final double total;
+  private final double min;
+  private final double max;
+
+  CategorySummary(String category, int count, double total, double min, double max) {
+    this.category = category;
+    this.count = count;
+    this.total = total;
+    this.min = min;
+    this.max = max;
+  }
+
+  public String getCategory() {
+    return category;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public double getTotal() {
+    return total;
+  }
+
+  public double getMin() {
+    return min;
+  }
+
+  public double getMax() {
+    return max;
+  }
+
+}
@@ -0,0 +1,133 @@
+package model;
+
+/**
+ * Bounded undo/redo history of the changes made to the store.
+ *
+ * Each command records its operation, the row position and the row's values
+ * in a ring buffer of primitive arrays. Since commands are undone in reverse
+ * order and redone in order, the recorded position is still valid when the
+ * command is reversed, so no search is needed. Once the buffer is full the
+ * oldest command is dropped, which keeps the memory flat in long sessions.
+ */
+class CommandLog {
+
+  static final byte ADD = 1;
+  static final byte REMOVE = 2;
+
+  private final byte[] ops;
+  private final int[] rows;
+  private final long[] ids;
+  private final double[] amounts;
+  private final int[] categories;
+  private final long[] times;
+  // Slot of the oldest command
+  private int start;
+  // Commands from start on that can be undone, followed by the ones that can be redone
+  private int undoCount;
+  private int redoCount;
+
+  CommandLog(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("The undo depth must not be negative.");
+    }
+    ops = new byte[capacity];
+    rows = new int[capacity];
+    ids = new long[capacity];
+    amounts = new double[capacity];
+    categories = new int[capacity];
+    times = new long[capacity];
+  }
+
+  int capacity() {
+    return ops.length;
+  }
+
+  // The bytes held by the history's columns
+  long memoryFootprint() {
+    return (long) capacity() * (1 + 4 + 8 + 8 + 4 + 8);
+  }
+
+  int undoCount() {
+    return undoCount;
+  }
+
+  int redoCount() {
+    return redoCount;
+  }
+
+  /**
+   * Records a new command. The commands that could be redone are discarded.
+   */
+  void record(byte op, int row, long id, double amount, int category, long time) {
+    redoCount = 0;
+    if (ops.length == 0) {
+      return;
+    }
+    int slot = slot(undoCount);
+    if (undoCount == ops.length) {
+      // The buffer is full: the new command overwrites the oldest one
+      start = slot(1);
+    } else {
+      undoCount++;
+    }
+    ops[slot] = op;
+    rows[slot] = row;
+    ids[slot] = id;
+    amounts[slot] = amount;
+    categories[slot] = category;
+    times[slot] = time;
+  }
+
+  /**
+   * @return the slot of the command to undo, or -1 if there is none
+   */
+  int undo() {
+    if (undoCount == 0) {
+      return -1;
+    }
+    undoCount--;
+    redoCount++;
+    return slot(undoCount);
+  }
+
+  /**
+   * @return the slot of the command to redo, or -1 if there is none
+   */
+  int redo() {
+    if (redoCount == 0) {
+      return -1;
+    }
+    redoCount--;
+    undoCount++;
+    return slot(undoCount - 1);
+  }
+
+  byte op(int slot) {
+    return ops[slot];
+  }
+
+  int row(int slot) {
+    return rows[slot];
+  }
+
+  long id(int slot) {
+    return ids[slot];
+  }
+
+  double amount(int slot) {
+    return amounts[slot];
+  }
+
+  int category(int slot) {
+    return categories[slot];
+  }
+
+  long time(int slot) {
+    return times[slot];
+  }
+
+  private int slot(int offset) {
+    return (start + offset) % ops.length;
+  }
+
+}
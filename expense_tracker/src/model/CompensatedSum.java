@@ -0,0 +1,35 @@
+package model;
+
+/**
+ * Running sum of doubles with Neumaier (improved Kahan) compensation, so the
+ * rounding error does not grow with the number of values added and removed.
+ */
+class CompensatedSum {
+
+  private double sum;
+  private double compensation;
+
+  void add(double value) {
+    double t = sum + value;
+    if (Math.abs(sum) >= Math.abs(value)) {
+      compensation += (sum - t) + value;
+    } else {
+      compensation += (value - t) + sum;
+    }
+    sum = t;
+  }
+
+  void subtract(double value) {
+    add(-value);
+  }
+
+  double value() {
+    return sum + compensation;
+  }
+
+  void clear() {
+    sum = 0;
+    compensation = 0;
+  }
+
+}
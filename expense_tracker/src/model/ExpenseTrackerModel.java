@@ -1,19 +1,139 @@
 package model;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
-import java.util.Stack;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import metrics.Metrics;
+
+/**
+ * The model can be read and changed from any thread. Every change and every
+ * snapshot is taken while holding the store's lock, so a snapshot always shows
+ * the rows of one point in time. Listeners are called on the thread that made
+ * the change, while the lock is held, so they see the changes in order.
+ *
+ * A model opened on a log file is persistent: every change is written to the
+ * log and forced to disk before the changing method returns. The undo history
+ * is not persisted. A checkpoint of all rows is kept next to the log, so that
+ * opening the model only replays the records written after it.
+ */
 public class ExpenseTrackerModel {
 
+  public static final int DEFAULT_UNDO_DEPTH = 1000;
+
   //encapsulation - data integrity
-  private List<Transaction> transactions;
-  private Stack<Transaction> undoStack;
+  private TransactionStore store;
+  // Bounded undo/redo history of adds and removals
+  private CommandLog history;
+  private final List<TransactionListener> listeners;
+  // Write-ahead log of a persistent model, otherwise null
+  private TransactionLog log;
+  private Path checkpointFile;
+  // Rules for the rows added in batches and the categories registered at runtime
+  private volatile TransactionValidator validator = TransactionValidator.DEFAULT;
 
   public ExpenseTrackerModel() {
-    transactions = new ArrayList<>();
-    undoStack = new Stack<>();
+    this(DEFAULT_UNDO_DEPTH);
+  }
+
+  /**
+   * @param undoDepth the number of changes that can be undone; older ones are forgotten
+   */
+  public ExpenseTrackerModel(int undoDepth) {
+    store = new TransactionStore();
+    history = new CommandLog(undoDepth);
+    listeners = new CopyOnWriteArrayList<>();
+  }
+
+  public ExpenseTrackerModel(Path logFile) throws IOException {
+    this(logFile, DEFAULT_UNDO_DEPTH);
+  }
+
+  /**
+   * Opens a persistent model, loading the checkpoint (the log file name with
+   * ".checkpoint" appended) if there is one and replaying the rest of the log.
+   * The log file is created if it does not exist.
+   */
+  public ExpenseTrackerModel(Path logFile, int undoDepth) throws IOException {
+    this(undoDepth);
+    checkpointFile = logFile.resolveSibling(logFile.getFileName() + ".checkpoint");
+    long replayFrom = TransactionCheckpoint.load(checkpointFile, store);
+    log = TransactionLog.open(logFile, store, replayFrom);
+    store.attach(log);
+    // Categories registered in an earlier session are allowed again
+    for (int code = 0; code < store.categoryCount(); code++) {
+      validator = validator.withCategory(store.categoryName(code));
+    }
+  }
+
+  public TransactionValidator getValidator() {
+    return validator;
+  }
+
+  /**
+   * Replaces the rules of this model, including the categories registered so far.
+   */
+  public void setValidator(TransactionValidator validator) {
+    if (validator == null) {
+      throw new IllegalArgumentException("The validator must be non-null.");
+    }
+    synchronized (store) {
+      this.validator = validator;
+    }
+  }
+
+  /**
+   * Writes the current rows of a persistent model to its checkpoint file. The
+   * model can be changed while the checkpoint is written.
+   */
+  public void checkpoint() throws IOException {
+    if (log == null) {
+      throw new IllegalStateException("The model is not persistent.");
+    }
+    TransactionSnapshot snapshot;
+    long nextId;
+    long position;
+    synchronized (store) {
+      snapshot = store.snapshot();
+      nextId = store.nextId();
+      position = log.position();
+    }
+    // The log must reach the checkpoint's position before the checkpoint is used
+    log.sync(position);
+    TransactionCheckpoint.write(checkpointFile, snapshot, nextId, position);
+  }
+
+  /**
+   * Writes a checkpoint and closes the log of a persistent model.
+   */
+  public void close() throws IOException {
+    if (log != null) {
+      checkpoint();
+      log.close();
+    }
+  }
+
+  public void addTransactionListener(TransactionListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Adds the listener and returns the snapshot it starts from: the listener
+   * is called for every change made after that snapshot, and for no other.
+   */
+  public TransactionSnapshot subscribe(TransactionListener listener) {
+    synchronized (store) {
+      listeners.add(listener);
+      return store.snapshot();
+    }
+  }
+
+  public void removeTransactionListener(TransactionListener listener) {
+    listeners.remove(listener);
   }
 
   public void addTransaction(Transaction t) {
@@ -21,28 +141,319 @@ public class ExpenseTrackerModel {
     if (t == null) {
       throw new IllegalArgumentException("The new transaction must be non-null.");
     }
-    transactions.add(t);
-    undoStack.push(t);
+    long start = System.nanoTime();
+    long position;
+    synchronized (store) {
+      long id = store.append(t.getAmount(), t.getCategory(), t.getTime());
+      t.bind(id);
+      int row = store.size() - 1;
+      history.record(CommandLog.ADD, row, id, t.getAmount(), store.categoryCodeAt(row), t.getTime());
+      fireInserted(row, row);
+      position = logPosition();
+    }
+    commit(position);
+    Metrics.MODEL_ADD.recordSince(start);
+  }
+
+  /**
+   * Allows a new category at runtime: adds it to the validation rules of this
+   * model and interns it in the category registry, so filters, summaries and
+   * rollups know it before its first transaction. Registering a known category
+   * does nothing.
+   *
+   * @return the normalized (lower case) name of the category
+   */
+  public String registerCategory(String category) {
+    long position;
+    String name;
+    synchronized (store) {
+      TransactionValidator extended = validator.withCategory(category);
+      name = store.categoryName(store.registerCategory(category));
+      validator = extended;
+      position = logPosition();
+    }
+    commit(position);
+    return name;
+  }
+
+  /**
+   * Appends the first count rows of the given columns as one batch, with a
+   * single notification for all of them. All rows are validated before any is
+   * added. Batches are not recorded in the undo history.
+   *
+   * @return the position of the first appended row
+   */
+  public int addTransactions(double[] amounts, String[] categories, long[] times, int count) {
+    if (count < 0 || count > amounts.length || count > categories.length || count > times.length) {
+      throw new IllegalArgumentException("Invalid batch size: " + count);
+    }
+    long start = System.nanoTime();
+    TransactionValidator validator = this.validator;
+    int invalid = validator.firstInvalid(amounts, categories, count);
+    if (invalid != -1) {
+      if (!validator.isValidAmount(amounts[invalid])) {
+        throw new IllegalArgumentException("The amount is not valid.");
+      }
+      throw new IllegalArgumentException("The category is not valid.");
+    }
+    int first;
+    long position;
+    synchronized (store) {
+      first = store.size();
+      for (int i = 0; i < count; i++) {
+        store.append(amounts[i], categories[i], times[i]);
+      }
+      if (count > 0) {
+        fireInserted(first, first + count - 1);
+      }
+      position = logPosition();
+    }
+    // One sync for the whole batch
+    commit(position);
+    Metrics.MODEL_ADD_BATCH.recordSince(start);
+    return first;
   }
 
   public void removeTransaction(Transaction t) {
-    transactions.remove(t);
-    undoStack.push(t);
+    // Transactions that are not stored are ignored
+    if (t == null) {
+      return;
+    }
+    long start = System.nanoTime();
+    long position;
+    synchronized (store) {
+      int row = store.positionOf(t.getId());
+      if (row == -1) {
+        return;
+      }
+      history.record(CommandLog.REMOVE, row, t.getId(), store.amountAt(row), store.categoryCodeAt(row),
+          store.timeAt(row));
+      store.remove(row);
+      fireRemoved(row);
+      position = logPosition();
+    }
+    commit(position);
+    Metrics.MODEL_REMOVE.recordSince(start);
   }
 
   public List<Transaction> getTransactions() {
     //encapsulation - data integrity
-    return Collections.unmodifiableList(new ArrayList<>(transactions));
+    return getSnapshot();
+  }
+
+  /**
+   * Returns an immutable, version-stamped view of the transactions in O(1).
+   * The snapshot shares storage with the model and is not affected by later changes.
+   */
+  public TransactionSnapshot getSnapshot() {
+    synchronized (store) {
+      return store.snapshot();
+    }
+  }
+
+  public int getTransactionCount() {
+    synchronized (store) {
+      return store.size();
+    }
+  }
+
+  /**
+   * @return an estimate of the bytes held by the rows, their indexes, aggregates
+   *         and rollups, and the undo history
+   */
+  public long getMemoryFootprint() {
+    synchronized (store) {
+      return store.memoryFootprint() + history.memoryFootprint();
+    }
+  }
+
+  /**
+   * @return the modification version, incremented by every add, remove and undo
+   */
+  public long getVersion() {
+    synchronized (store) {
+      return store.getVersion();
+    }
+  }
+
+  /**
+   * @return the number of transactions in the category (ignoring case), from the category index
+   */
+  public int getCategoryCount(String category) {
+    synchronized (store) {
+      return store.categoryRowCount(category);
+    }
+  }
+
+  /**
+   * @return the total amount of all transactions, maintained incrementally
+   */
+  public double getTotalAmount() {
+    synchronized (store) {
+      return store.totalAmount();
+    }
+  }
+
+  /**
+   * @return the count, total, min and max of the category (ignoring case), without a scan
+   */
+  public CategorySummary getCategorySummary(String category) {
+    synchronized (store) {
+      return store.categorySummary(category);
+    }
+  }
+
+  /**
+   * @return the summaries of all categories that have transactions
+   */
+  public List<CategorySummary> getCategorySummaries() {
+    synchronized (store) {
+      return store.categorySummaries();
+    }
+  }
+
+  /**
+   * Spend per day, answered from the day rollups without visiting the transactions.
+   *
+   * @param category the category (ignoring case), or null for all categories
+   * @return the total of each day from one date to the other, both inclusive
+   */
+  public double[] getDailyTotals(String category, LocalDate from, LocalDate to) {
+    synchronized (store) {
+      return store.dailyTotals(category, from, to);
+    }
+  }
+
+  /**
+   * Spend per month, answered from the month rollups.
+   *
+   * @param category the category (ignoring case), or null for all categories
+   * @return the total of each month from one month to the other, both inclusive
+   */
+  public double[] getMonthlyTotals(String category, YearMonth from, YearMonth to) {
+    synchronized (store) {
+      return store.monthlyTotals(category, from, to);
+    }
+  }
+
+  /**
+   * @param category the category (ignoring case), or null for all categories
+   * @return the total spend from one date to the other, both inclusive
+   */
+  public double getTotalBetween(String category, LocalDate from, LocalDate to) {
+    synchronized (store) {
+      return store.totalBetween(category, from, to);
+    }
   }
 
   public boolean isUndoStackEmpty() {
-    return undoStack.isEmpty();
+    synchronized (store) {
+      return history.undoCount() == 0;
+    }
+  }
+
+  public boolean isRedoStackEmpty() {
+    synchronized (store) {
+      return history.redoCount() == 0;
+    }
+  }
+
+  /**
+   * @return the number of changes that can currently be undone
+   */
+  public int getUndoDepth() {
+    synchronized (store) {
+      return history.undoCount();
+    }
+  }
+
+  /**
+   * Reverts the most recent add or removal. An undone removal puts the
+   * transaction back at its original position.
+   *
+   * @return false if there was nothing to undo
+   */
+  public boolean undo() {
+    long start = System.nanoTime();
+    long position;
+    synchronized (store) {
+      int slot = history.undo();
+      if (slot == -1) {
+        return false;
+      }
+      if (history.op(slot) == CommandLog.ADD) {
+        removeRow(history.row(slot));
+      } else {
+        insertRow(slot);
+      }
+      position = logPosition();
+    }
+    commit(position);
+    Metrics.MODEL_UNDO.recordSince(start);
+    return true;
+  }
+
+  /**
+   * Re-applies the most recently undone change.
+   *
+   * @return false if there was nothing to redo
+   */
+  public boolean redo() {
+    long start = System.nanoTime();
+    long position;
+    synchronized (store) {
+      int slot = history.redo();
+      if (slot == -1) {
+        return false;
+      }
+      if (history.op(slot) == CommandLog.ADD) {
+        insertRow(slot);
+      } else {
+        removeRow(history.row(slot));
+      }
+      position = logPosition();
+    }
+    commit(position);
+    Metrics.MODEL_REDO.recordSince(start);
+    return true;
+  }
+
+  private long logPosition() {
+    return log == null ? 0 : log.position();
+  }
+
+  // Returns once the log is durable up to the given position
+  private void commit(long position) {
+    if (log != null) {
+      try {
+        log.sync(position);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  private void removeRow(int row) {
+    store.remove(row);
+    fireRemoved(row);
+  }
+
+  // Puts the row recorded in the given history slot back where it was
+  private void insertRow(int slot) {
+    int row = history.row(slot);
+    store.insert(row, history.id(slot), history.amount(slot), history.category(slot), history.time(slot));
+    fireInserted(row, row);
+  }
+
+  private void fireInserted(int firstRow, int lastRow) {
+    for (TransactionListener listener : listeners) {
+      listener.transactionsInserted(firstRow, lastRow);
+    }
   }
 
-  public void undo() {
-    if (!undoStack.isEmpty()) {
-      Transaction t = undoStack.pop();
-      transactions.remove(t);
+  private void fireRemoved(int row) {
+    for (TransactionListener listener : listeners) {
+      listener.transactionsRemoved(row, row);
     }
   }
 
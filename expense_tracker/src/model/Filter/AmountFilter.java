@@ -1,9 +1,10 @@
 package model.Filter;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.function.IntPredicate;
 
 import model.Transaction;
+import model.TransactionSnapshot;
 import controller.InputValidation;
 
 public class AmountFilter implements TransactionFilter{
@@ -20,14 +21,45 @@ public class AmountFilter implements TransactionFilter{
     }
     @Override
     public List<Transaction> filter(List<Transaction> transactions){
-        List<Transaction> filteredTransactions = new ArrayList<>();
-        for(Transaction transaction : transactions){
-            // Your solution could use a different comparison here.
-            if(transaction.getAmount() == amountFilter){
-                filteredTransactions.add(transaction);
-            }
+        return FilterEngine.filter(this, transactions);
+    }
+
+    @Override
+    public IntPredicate compile(List<Transaction> transactions) {
+        // Your solution could use a different comparison here.
+        if (transactions instanceof TransactionSnapshot) {
+            TransactionSnapshot rows = (TransactionSnapshot) transactions;
+            return row -> rows.amountAt(row) == amountFilter;
         }
-        return filteredTransactions;
+        return row -> transactions.get(row).getAmount() == amountFilter;
+    }
+
+    // Use the amount index when filtering the model's current snapshot
+    @Override
+    public int[] lookup(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            return ((TransactionSnapshot) transactions).rowsWithAmountBetween(amountFilter, amountFilter);
+        }
+        return null;
+    }
+
+    @Override
+    public int estimate(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            return ((TransactionSnapshot) transactions).countWithAmountBetween(amountFilter, amountFilter);
+        }
+        return -1;
     }
     
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof AmountFilter
+            && Double.compare(amountFilter, ((AmountFilter) other).amountFilter) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Double.hashCode(amountFilter);
+    }
 }
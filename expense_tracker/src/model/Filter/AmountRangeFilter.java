@@ -0,0 +1,96 @@
+package model.Filter;
+
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * Keeps the transactions whose amount lies in a range, both bounds inclusive.
+ * On the model's current snapshot the amount index answers the query in
+ * O(log n + matches).
+ */
+public class AmountRangeFilter implements TransactionFilter {
+    private double minAmount;
+    private double maxAmount;
+
+    public AmountRangeFilter(double minAmount, double maxAmount) {
+        // NaN bounds fail the comparison as well
+        if (!(minAmount <= maxAmount)) {
+            throw new IllegalArgumentException("Invalid amount range filter");
+        }
+        this.minAmount = minAmount;
+        this.maxAmount = maxAmount;
+    }
+
+    public static AmountRangeFilter between(double minAmount, double maxAmount) {
+        return new AmountRangeFilter(minAmount, maxAmount);
+    }
+
+    public static AmountRangeFilter greaterThan(double amount) {
+        return new AmountRangeFilter(Math.nextUp(amount), Double.POSITIVE_INFINITY);
+    }
+
+    public static AmountRangeFilter lessThan(double amount) {
+        return new AmountRangeFilter(Double.NEGATIVE_INFINITY, Math.nextDown(amount));
+    }
+
+    public double getMinAmount() {
+        return minAmount;
+    }
+
+    public double getMaxAmount() {
+        return maxAmount;
+    }
+
+    @Override
+    public List<Transaction> filter(List<Transaction> transactions) {
+        return FilterEngine.filter(this, transactions);
+    }
+
+    @Override
+    public IntPredicate compile(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            TransactionSnapshot rows = (TransactionSnapshot) transactions;
+            return row -> {
+                double amount = rows.amountAt(row);
+                return amount >= minAmount && amount <= maxAmount;
+            };
+        }
+        return row -> {
+            double amount = transactions.get(row).getAmount();
+            return amount >= minAmount && amount <= maxAmount;
+        };
+    }
+
+    @Override
+    public int[] lookup(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            return ((TransactionSnapshot) transactions).rowsWithAmountBetween(minAmount, maxAmount);
+        }
+        return null;
+    }
+
+    @Override
+    public int estimate(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            return ((TransactionSnapshot) transactions).countWithAmountBetween(minAmount, maxAmount);
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof AmountRangeFilter)) {
+            return false;
+        }
+        AmountRangeFilter range = (AmountRangeFilter) other;
+        return Double.compare(minAmount, range.minAmount) == 0 && Double.compare(maxAmount, range.maxAmount) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Double.hashCode(minAmount) + Double.hashCode(maxAmount);
+    }
+}
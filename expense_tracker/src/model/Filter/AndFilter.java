@@ -0,0 +1,115 @@
+package model.Filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import model.Transaction;
+
+/**
+ * Keeps the transactions that match all of its filters.
+ *
+ * If any of the filters has an index, the one with the smallest estimate
+ * produces the candidate rows and the others are fused into one predicate
+ * that is tested on the candidates only.
+ */
+public class AndFilter implements TransactionFilter {
+    private List<TransactionFilter> filters;
+
+    public AndFilter(TransactionFilter... filters) {
+        if (filters.length == 0) {
+            throw new IllegalArgumentException("At least one filter is required");
+        }
+        this.filters = new ArrayList<>();
+        for (TransactionFilter filter : filters) {
+            if (filter == null) {
+                throw new IllegalArgumentException("The filters must be non-null");
+            }
+            // Flatten nested conjunctions so the planner sees every filter
+            if (filter instanceof AndFilter) {
+                this.filters.addAll(((AndFilter) filter).filters);
+            } else {
+                this.filters.add(filter);
+            }
+        }
+    }
+
+    public List<TransactionFilter> getFilters() {
+        return Collections.unmodifiableList(filters);
+    }
+
+    @Override
+    public List<Transaction> filter(List<Transaction> transactions) {
+        return FilterEngine.filter(this, transactions);
+    }
+
+    @Override
+    public IntPredicate compile(List<Transaction> transactions) {
+        return compileExcept(-1, transactions);
+    }
+
+    @Override
+    public int[] lookup(List<Transaction> transactions) {
+        int driver = mostSelective(transactions);
+        if (driver == -1) {
+            return null;
+        }
+        int[] candidates = filters.get(driver).lookup(transactions);
+        if (candidates == null || filters.size() == 1) {
+            return candidates;
+        }
+        return FilterEngine.retain(candidates, compileExcept(driver, transactions));
+    }
+
+    @Override
+    public int estimate(List<Transaction> transactions) {
+        int driver = mostSelective(transactions);
+        return driver == -1 ? -1 : filters.get(driver).estimate(transactions);
+    }
+
+    // Returns the position of the filter with the smallest estimate, or -1 if none has an index
+    private int mostSelective(List<Transaction> transactions) {
+        int driver = -1;
+        int best = -1;
+        for (int i = 0; i < filters.size(); i++) {
+            int estimate = filters.get(i).estimate(transactions);
+            if (estimate >= 0 && (driver == -1 || estimate < best)) {
+                driver = i;
+                best = estimate;
+            }
+        }
+        return driver;
+    }
+
+    private IntPredicate compileExcept(int skipped, List<Transaction> transactions) {
+        IntPredicate predicate = null;
+        for (int i = 0; i < filters.size(); i++) {
+            if (i != skipped) {
+                IntPredicate next = filters.get(i).compile(transactions);
+                predicate = predicate == null ? next : predicate.and(next);
+            }
+        }
+        return predicate;
+    }
+
+    @Override
+    public boolean isRowLocal() {
+        for (TransactionFilter filter : filters) {
+            if (!filter.isRowLocal()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof AndFilter && filters.equals(((AndFilter) other).filters);
+    }
+
+    @Override
+    public int hashCode() {
+        return filters.hashCode();
+    }
+}
@@ -1,18 +1,29 @@
 package model.Filter;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.IntPredicate;
 
 import model.Transaction;
+import model.TransactionSnapshot;
+import model.TransactionValidator;
 import controller.InputValidation;
 
 public class CategoryFilter implements TransactionFilter {
     private String categoryFilter;
 
     public CategoryFilter(String categoryFilter) {
+        this(categoryFilter, InputValidation.getValidator());
+    }
+
+    /**
+     * Validates the category with the given rules, e.g. those of the model it
+     * filters.
+     */
+    public CategoryFilter(String categoryFilter, TransactionValidator validator) {
         // Since the CategoryFilter constructor is public, 
         // the input validation needs to be performed again.
-        if(!InputValidation.isValidCategory(categoryFilter)){
+        if(!validator.isValidCategory(categoryFilter)){
             throw new IllegalArgumentException("Invalid category filter");
         }else{
             this.categoryFilter = categoryFilter;
@@ -21,15 +32,48 @@ public class CategoryFilter implements TransactionFilter {
 
     @Override
     public List<Transaction> filter(List<Transaction> transactions) {
+        return FilterEngine.filter(this, transactions);
+    }
+
+    @Override
+    public IntPredicate compile(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            // The registry folds case once, so each row is one int comparison
+            TransactionSnapshot rows = (TransactionSnapshot) transactions;
+            int code = rows.categoryCode(categoryFilter);
+            return row -> rows.categoryCodeAt(row) == code;
+        }
+        return row -> transactions.get(row).getCategory().equalsIgnoreCase(categoryFilter);
+    }
 
-        List<Transaction> filteredTransactions = new ArrayList<>();
+    // Use the category index when filtering the model's current snapshot
+    @Override
+    public int[] lookup(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            TransactionSnapshot rows = (TransactionSnapshot) transactions;
+            return rows.rowsWithCategory(rows.categoryCode(categoryFilter));
+        }
+        return null;
+    }
 
-        for (Transaction transaction : transactions) {
-            if (transaction.getCategory().equalsIgnoreCase(categoryFilter)) {
-                filteredTransactions.add(transaction);
-            }
+    @Override
+    public int estimate(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            TransactionSnapshot rows = (TransactionSnapshot) transactions;
+            return rows.countWithCategory(rows.categoryCode(categoryFilter));
         }
+        return -1;
+    }
 
-        return filteredTransactions;
+    // Categories are compared ignoring case, like the rows they match
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CategoryFilter
+            && categoryFilter.equalsIgnoreCase(((CategoryFilter) other).categoryFilter);
+    }
+
+    @Override
+    public int hashCode() {
+        return categoryFilter.toLowerCase(Locale.ROOT).hashCode();
     }
 }
@@ -0,0 +1,109 @@
+package model.Filter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * Keeps the transactions whose time (epoch milliseconds) lies in a range, both
+ * bounds inclusive. On the model's current snapshot the time index answers the
+ * query in O(log n + matches).
+ */
+public class DateRangeFilter implements TransactionFilter {
+    private long fromTime;
+    private long toTime;
+
+    public DateRangeFilter(long fromTime, long toTime) {
+        if (fromTime > toTime) {
+            throw new IllegalArgumentException("Invalid date range filter");
+        }
+        this.fromTime = fromTime;
+        this.toTime = toTime;
+    }
+
+    public static DateRangeFilter between(long fromTime, long toTime) {
+        return new DateRangeFilter(fromTime, toTime);
+    }
+
+    public static DateRangeFilter since(long fromTime) {
+        return new DateRangeFilter(fromTime, Long.MAX_VALUE);
+    }
+
+    public static DateRangeFilter before(long time) {
+        if (time == Long.MIN_VALUE) {
+            throw new IllegalArgumentException("Invalid date range filter");
+        }
+        return new DateRangeFilter(Long.MIN_VALUE, time - 1);
+    }
+
+    /**
+     * Keeps the transactions of the given number of days up to now.
+     */
+    public static DateRangeFilter lastDays(int days) {
+        if (days <= 0) {
+            throw new IllegalArgumentException("Invalid date range filter");
+        }
+        return since(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days));
+    }
+
+    public long getFromTime() {
+        return fromTime;
+    }
+
+    public long getToTime() {
+        return toTime;
+    }
+
+    @Override
+    public List<Transaction> filter(List<Transaction> transactions) {
+        return FilterEngine.filter(this, transactions);
+    }
+
+    @Override
+    public IntPredicate compile(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            TransactionSnapshot rows = (TransactionSnapshot) transactions;
+            return row -> {
+                long time = rows.timeAt(row);
+                return time >= fromTime && time <= toTime;
+            };
+        }
+        return row -> {
+            long time = transactions.get(row).getTime();
+            return time >= fromTime && time <= toTime;
+        };
+    }
+
+    @Override
+    public int[] lookup(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            return ((TransactionSnapshot) transactions).rowsWithTimeBetween(fromTime, toTime);
+        }
+        return null;
+    }
+
+    @Override
+    public int estimate(List<Transaction> transactions) {
+        if (transactions instanceof TransactionSnapshot) {
+            return ((TransactionSnapshot) transactions).countWithTimeBetween(fromTime, toTime);
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof DateRangeFilter)) {
+            return false;
+        }
+        DateRangeFilter range = (DateRangeFilter) other;
+        return fromTime == range.fromTime && toTime == range.toTime;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(fromTime) + Long.hashCode(toTime);
+    }
+}
@@ -0,0 +1,199 @@
+package model.Filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
+
+import metrics.Metrics;
+import model.Transaction;
+
+/**
+ * Evaluates a TransactionFilter, composed or not, in a single pass.
+ *
+ * If the filter can be answered from an index the matching rows come straight
+ * from the lookup. Otherwise the filter is compiled into one predicate that is
+ * tested once per row. No intermediate lists are built either way.
+ *
+ * Large scans are split into chunks that are tested on the common fork/join
+ * pool. The rows of each chunk are sorted, and the chunks are concatenated in
+ * order, so the result is the same as that of a sequential scan.
+ */
+public class FilterEngine {
+
+    /**
+     * How scans are executed. ADAPTIVE only scans in parallel when a
+     * sequential scan is expected to take long enough to pay for the split.
+     */
+    public enum Execution {
+        SEQUENTIAL, PARALLEL, ADAPTIVE
+    }
+
+    // Rows per parallel chunk, at least; smaller scans are always sequential
+    static final int MIN_CHUNK = 4096;
+    // Expected sequential scan time from which ADAPTIVE splits a scan
+    static final long PARALLEL_MIN_NANOS = 200_000;
+
+    private static volatile Execution execution = Execution.ADAPTIVE;
+    // Average cost of testing one row, measured by the scans themselves
+    private static volatile double nanosPerRow = 2;
+
+    private FilterEngine() {
+    }
+
+    public static Execution getExecution() {
+        return execution;
+    }
+
+    public static void setExecution(Execution execution) {
+        if (execution == null) {
+            throw new IllegalArgumentException("The execution must be non-null.");
+        }
+        FilterEngine.execution = execution;
+    }
+
+    /**
+     * @return the sorted positions of the rows matching the filter
+     */
+    public static int[] selectRows(TransactionFilter filter, List<Transaction> transactions) {
+        long start = System.nanoTime();
+        int[] rows = filter.lookup(transactions);
+        if (rows == null) {
+            // Only lists with cheap positional reads are read from several threads
+            rows = scan(filter.compile(transactions), transactions.size(), transactions instanceof RandomAccess);
+        }
+        Metrics.FILTER.recordSince(start);
+        return rows;
+    }
+
+    public static List<Transaction> filter(TransactionFilter filter, List<Transaction> transactions) {
+        int[] rows = selectRows(filter, transactions);
+        List<Transaction> filteredTransactions = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            filteredTransactions.add(transactions.get(row));
+        }
+        return filteredTransactions;
+    }
+
+    static int[] scan(IntPredicate predicate, int size, boolean splittable) {
+        if (splittable && shouldSplit(size)) {
+            return parallelScan(predicate, size);
+        }
+        long start = System.nanoTime();
+        int[] rows = scanRange(predicate, 0, size);
+        observe(size, System.nanoTime() - start);
+        return rows;
+    }
+
+    private static boolean shouldSplit(int size) {
+        Execution mode = execution;
+        if (mode == Execution.SEQUENTIAL || size <= MIN_CHUNK) {
+            return false;
+        }
+        if (mode == Execution.PARALLEL) {
+            return true;
+        }
+        return ForkJoinPool.getCommonPoolParallelism() > 1 && size * nanosPerRow >= PARALLEL_MIN_NANOS;
+    }
+
+    private static int[] parallelScan(IntPredicate predicate, int size) {
+        // A few chunks per worker, so one slow chunk does not hold up the others
+        int chunk = Math.max(MIN_CHUNK, size / (ForkJoinPool.getCommonPoolParallelism() * 4) + 1);
+        ScanTask[] tasks = new ScanTask[(size + chunk - 1) / chunk];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new ScanTask(predicate, i * chunk, Math.min(size, (i + 1) * chunk));
+        }
+        ForkJoinTask.invokeAll(tasks);
+        int found = 0;
+        for (ScanTask task : tasks) {
+            found += task.getRawResult().length;
+        }
+        int[] rows = new int[found];
+        found = 0;
+        for (ScanTask task : tasks) {
+            int[] chunkRows = task.getRawResult();
+            System.arraycopy(chunkRows, 0, rows, found, chunkRows.length);
+            found += chunkRows.length;
+        }
+        return rows;
+    }
+
+    // Keeps a running average of the cost per row of large enough scans
+    private static void observe(int size, long nanos) {
+        if (size >= MIN_CHUNK) {
+            nanosPerRow = nanosPerRow * 0.75 + (double) nanos / size * 0.25;
+        }
+    }
+
+    static int[] scanRange(IntPredicate predicate, int from, int to) {
+        int[] rows = new int[16];
+        int found = 0;
+        for (int row = from; row < to; row++) {
+            if (predicate.test(row)) {
+                if (found == rows.length) {
+                    rows = Arrays.copyOf(rows, found * 2);
+                }
+                rows[found++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, found);
+    }
+
+    // Keeps the candidate rows that match the predicate
+    static int[] retain(int[] candidates, IntPredicate predicate) {
+        int found = 0;
+        int[] rows = new int[candidates.length];
+        for (int row : candidates) {
+            if (predicate.test(row)) {
+                rows[found++] = row;
+            }
+        }
+        return found == rows.length ? rows : Arrays.copyOf(rows, found);
+    }
+
+    // Merges two sorted row arrays without duplicates
+    static int[] union(int[] a, int[] b) {
+        int[] rows = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int found = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                rows[found++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                rows[found++] = b[j++];
+            } else {
+                rows[found++] = a[i++];
+                j++;
+            }
+        }
+        return found == rows.length ? rows : Arrays.copyOf(rows, found);
+    }
+
+    // Tests the rows of one chunk and returns the matching ones in order
+    private static final class ScanTask extends RecursiveTask<int[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final IntPredicate predicate;
+        private final int from;
+        private final int to;
+
+        ScanTask(IntPredicate predicate, int from, int to) {
+            this.predicate = predicate;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected int[] compute() {
+            long start = System.nanoTime();
+            int[] rows = scanRange(predicate, from, to);
+            observe(to - from, System.nanoTime() - start);
+            return rows;
+        }
+    }
+}
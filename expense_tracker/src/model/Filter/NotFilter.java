@@ -0,0 +1,54 @@
+package model.Filter;
+
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import model.Transaction;
+
+/**
+ * Keeps the transactions that do not match its filter.
+ */
+public class NotFilter implements TransactionFilter {
+    private TransactionFilter filter;
+
+    public NotFilter(TransactionFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("The filter must be non-null");
+        }
+        this.filter = filter;
+    }
+
+    public TransactionFilter getFilter() {
+        return filter;
+    }
+
+    @Override
+    public List<Transaction> filter(List<Transaction> transactions) {
+        return FilterEngine.filter(this, transactions);
+    }
+
+    @Override
+    public IntPredicate compile(List<Transaction> transactions) {
+        return filter.compile(transactions).negate();
+    }
+
+    @Override
+    public TransactionFilter negate() {
+        return filter;
+    }
+
+    @Override
+    public boolean isRowLocal() {
+        return filter.isRowLocal();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof NotFilter && filter.equals(((NotFilter) other).filter);
+    }
+
+    @Override
+    public int hashCode() {
+        return ~filter.hashCode();
+    }
+}
@@ -0,0 +1,104 @@
+package model.Filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import model.Transaction;
+
+/**
+ * Keeps the transactions that match at least one of its filters.
+ *
+ * If every filter has an index the lookups are merged; otherwise the filters
+ * are fused into one predicate for a single scan.
+ */
+public class OrFilter implements TransactionFilter {
+    private List<TransactionFilter> filters;
+
+    public OrFilter(TransactionFilter... filters) {
+        if (filters.length == 0) {
+            throw new IllegalArgumentException("At least one filter is required");
+        }
+        this.filters = new ArrayList<>();
+        for (TransactionFilter filter : filters) {
+            if (filter == null) {
+                throw new IllegalArgumentException("The filters must be non-null");
+            }
+            // Flatten nested disjunctions
+            if (filter instanceof OrFilter) {
+                this.filters.addAll(((OrFilter) filter).filters);
+            } else {
+                this.filters.add(filter);
+            }
+        }
+    }
+
+    public List<TransactionFilter> getFilters() {
+        return Collections.unmodifiableList(filters);
+    }
+
+    @Override
+    public List<Transaction> filter(List<Transaction> transactions) {
+        return FilterEngine.filter(this, transactions);
+    }
+
+    @Override
+    public IntPredicate compile(List<Transaction> transactions) {
+        IntPredicate predicate = null;
+        for (TransactionFilter filter : filters) {
+            IntPredicate next = filter.compile(transactions);
+            predicate = predicate == null ? next : predicate.or(next);
+        }
+        return predicate;
+    }
+
+    @Override
+    public int[] lookup(List<Transaction> transactions) {
+        if (estimate(transactions) < 0) {
+            return null;
+        }
+        int[] rows = new int[0];
+        for (TransactionFilter filter : filters) {
+            int[] next = filter.lookup(transactions);
+            if (next == null) {
+                return null;
+            }
+            rows = FilterEngine.union(rows, next);
+        }
+        return rows;
+    }
+
+    @Override
+    public int estimate(List<Transaction> transactions) {
+        long total = 0;
+        for (TransactionFilter filter : filters) {
+            int estimate = filter.estimate(transactions);
+            if (estimate < 0) {
+                return -1;
+            }
+            total += estimate;
+        }
+        return (int) Math.min(total, transactions.size());
+    }
+
+    @Override
+    public boolean isRowLocal() {
+        for (TransactionFilter filter : filters) {
+            if (!filter.isRowLocal()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof OrFilter && filters.equals(((OrFilter) other).filters);
+    }
+
+    @Override
+    public int hashCode() {
+        return -filters.hashCode();
+    }
+}
@@ -0,0 +1,95 @@
+package model.Filter;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * Keeps the n transactions with the largest amounts, in their original order.
+ * Among equal amounts the later transactions are preferred.
+ */
+public class TopAmountFilter implements TransactionFilter {
+    private int count;
+
+    public TopAmountFilter(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Invalid top amount filter");
+        }
+        this.count = count;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public List<Transaction> filter(List<Transaction> transactions) {
+        return FilterEngine.filter(this, transactions);
+    }
+
+    @Override
+    public IntPredicate compile(List<Transaction> transactions) {
+        // Whether a row is among the largest depends on all rows, so select them first
+        BitSet selected = new BitSet(transactions.size());
+        for (int row : lookup(transactions)) {
+            selected.set(row);
+        }
+        return selected::get;
+    }
+
+    @Override
+    public int[] lookup(List<Transaction> transactions) {
+        int[] rows = null;
+        if (transactions instanceof TransactionSnapshot) {
+            rows = ((TransactionSnapshot) transactions).rowsWithLargestAmounts(count);
+        }
+        return rows != null ? rows : largestRows(transactions);
+    }
+
+    @Override
+    public int estimate(List<Transaction> transactions) {
+        return Math.min(count, transactions.size());
+    }
+
+    // Selects the rows with a bounded min-heap ordered by amount, then by position
+    private int[] largestRows(List<Transaction> transactions) {
+        PriorityQueue<Integer> heap = new PriorityQueue<>(count, (a, b) -> {
+            int cmp = Double.compare(transactions.get(a).getAmount(), transactions.get(b).getAmount());
+            return cmp != 0 ? cmp : Integer.compare(a, b);
+        });
+        for (int row = 0; row < transactions.size(); row++) {
+            heap.add(row);
+            if (heap.size() > count) {
+                heap.poll();
+            }
+        }
+        int[] rows = new int[heap.size()];
+        int i = 0;
+        for (int row : heap) {
+            rows[i++] = row;
+        }
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    // Adding a larger amount can push another row out of the top
+    @Override
+    public boolean isRowLocal() {
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof TopAmountFilter && count == ((TopAmountFilter) other).count;
+    }
+
+    @Override
+    public int hashCode() {
+        return count;
+    }
+}
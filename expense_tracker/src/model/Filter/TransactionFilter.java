@@ -1,6 +1,9 @@
 package model.Filter;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
 
 import model.Transaction;
 
@@ -8,9 +11,75 @@ import model.Transaction;
  * The TransactionFilter supports filtering the transaction list.
  *
  * NOTE) The Strategy design pattern is being applied. This is the Strategy interface.
+ *
+ * Filters can be composed with and, or and negate. A composed filter is not
+ * applied one filter after the other: the FilterEngine evaluates it in a single
+ * pass, either over all rows with one fused predicate or over the rows that the
+ * most selective index lookup returns.
  */
 public interface TransactionFilter {
 
   public List<Transaction> filter(List<Transaction> transactions);
 
+  /**
+   * Compiles the filter into a predicate over the row positions of the given list.
+   * Anything that only depends on the list (such as category codes) is resolved
+   * once here instead of once per row.
+   *
+   * Filters that only implement filter are applied to the whole list once and
+   * a row matches if its transaction is in the result.
+   */
+  public default IntPredicate compile(List<Transaction> transactions) {
+    Set<Transaction> matching = new HashSet<>(filter(transactions));
+    return row -> matching.contains(transactions.get(row));
+  }
+
+  /**
+   * Filters the list without materializing the matching transactions.
+   *
+   * @return the sorted positions of the matching rows in the list
+   */
+  public default int[] filterRows(List<Transaction> transactions) {
+    return FilterEngine.selectRows(this, transactions);
+  }
+
+  /**
+   * Answers the filter from an index, if one is available for the given list.
+   *
+   * @return the sorted positions of the matching rows, or null if the rows
+   *         have to be scanned with the compiled predicate
+   */
+  public default int[] lookup(List<Transaction> transactions) {
+    return null;
+  }
+
+  /**
+   * Used by the planner to pick the most selective lookup first.
+   *
+   * @return the number of rows lookup would return, or -1 if lookup returns null
+   */
+  public default int estimate(List<Transaction> transactions) {
+    return -1;
+  }
+
+  /**
+   * @return true if whether a row matches only depends on that row, so a
+   *         LiveFilter only has to test the rows that change
+   */
+  public default boolean isRowLocal() {
+    return true;
+  }
+
+  public default TransactionFilter and(TransactionFilter other) {
+    return new AndFilter(this, other);
+  }
+
+  public default TransactionFilter or(TransactionFilter other) {
+    return new OrFilter(this, other);
+  }
+
+  public default TransactionFilter negate() {
+    return new NotFilter(this);
+  }
+
 }
@@ -0,0 +1,104 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Running aggregates over the stored rows: the overall total, and per
+ * category code the count, total, min and max.
+ *
+ * Totals are compensated sums and are updated in O(1). Min and max come from
+ * a per-category OrderedIndex of the amounts, updated in O(log n).
+ */
+class LedgerAggregates {
+
+  private final CategoryRegistry registry;
+  private final CompensatedSum total = new CompensatedSum();
+  private CategoryAggregate[] byCode = new CategoryAggregate[8];
+
+  LedgerAggregates(CategoryRegistry registry) {
+    this.registry = registry;
+  }
+
+  void add(int code, double amount, long id) {
+    total.add(amount);
+    CategoryAggregate aggregate = aggregateFor(code);
+    aggregate.sum.add(amount);
+    aggregate.amounts.insert(OrderedIndex.key(amount), id);
+  }
+
+  void remove(int code, double amount, long id) {
+    total.subtract(amount);
+    CategoryAggregate aggregate = aggregateFor(code);
+    aggregate.sum.subtract(amount);
+    aggregate.amounts.remove(OrderedIndex.key(amount), id);
+  }
+
+  double total() {
+    return total.value();
+  }
+
+  CategorySummary summary(int code) {
+    CategoryAggregate aggregate = code < byCode.length ? byCode[code] : null;
+    if (aggregate == null) {
+      return new CategorySummary(registry.name(code), 0, 0, Double.NaN, Double.NaN);
+    }
+    return aggregate.summary();
+  }
+
+  List<CategorySummary> summaries() {
+    List<CategorySummary> summaries = new ArrayList<>();
+    for (CategoryAggregate aggregate : byCode) {
+      if (aggregate != null && aggregate.amounts.size() > 0) {
+        summaries.add(aggregate.summary());
+      }
+    }
+    return summaries;
+  }
+
+  /**
+   * @return an estimate of the bytes held by the per-category amount indexes
+   */
+  long memoryFootprint() {
+    long bytes = 0;
+    for (CategoryAggregate aggregate : byCode) {
+      if (aggregate != null) {
+        bytes += aggregate.amounts.memoryFootprint();
+      }
+    }
+    return bytes;
+  }
+
+  private CategoryAggregate aggregateFor(int code) {
+    if (code >= byCode.length) {
+      byCode = Arrays.copyOf(byCode, Math.max(code + 1, byCode.length * 2));
+    }
+    CategoryAggregate aggregate = byCode[code];
+    if (aggregate == null) {
+      aggregate = new CategoryAggregate(registry.name(code));
+      byCode[code] = aggregate;
+    }
+    return aggregate;
+  }
+
+  private static class CategoryAggregate {
+    private final String name;
+    private final CompensatedSum sum = new CompensatedSum();
+    private final OrderedIndex amounts = new OrderedIndex();
+
+    CategoryAggregate(String name) {
+      this.name = name;
+    }
+
+    CategorySummary summary() {
+      int count = amounts.size();
+      if (count == 0) {
+        return new CategorySummary(name, 0, 0, Double.NaN, Double.NaN);
+      }
+      return new CategorySummary(name, count, sum.value(),
+          OrderedIndex.value(amounts.firstKey()), OrderedIndex.value(amounts.lastKey()));
+    }
+  }
+
+}
@@ -0,0 +1,243 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Sorted index of (key, row id) pairs, ordered by key and then by id.
+ *
+ * The pairs are kept in primitive blocks of at most BLOCK_SIZE entries, like the
+ * leaves of a B+ tree: an update binary searches the block directory, shifts
+ * entries inside one block and splits the block when it is full. Range queries
+ * are O(log n + matches).
+ */
+class OrderedIndex {
+
+  static final int BLOCK_SIZE = 512;
+
+  private long[][] keys = new long[4][];
+  private long[][] ids = new long[4][];
+  private int[] counts = new int[4];
+  private int blockCount;
+  private int size;
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return the bytes held by the allocated blocks
+   */
+  long memoryFootprint() {
+    return (long) blockCount * BLOCK_SIZE * (8 + 8);
+  }
+
+  void insert(long key, long id) {
+    if (blockCount == 0) {
+      insertBlock(0);
+    }
+    int block = findBlock(key, id);
+    int offset = search(block, key, id);
+    if (offset >= 0) {
+      return;
+    }
+    offset = -offset - 1;
+    if (offset == BLOCK_SIZE && block == blockCount - 1) {
+      // Appending past the last full block: start a new one instead of splitting
+      insertBlock(++block);
+      offset = 0;
+    } else if (counts[block] == BLOCK_SIZE) {
+      split(block);
+      if (offset > BLOCK_SIZE / 2) {
+        block++;
+        offset -= BLOCK_SIZE / 2;
+      }
+    }
+    int count = counts[block];
+    System.arraycopy(keys[block], offset, keys[block], offset + 1, count - offset);
+    System.arraycopy(ids[block], offset, ids[block], offset + 1, count - offset);
+    keys[block][offset] = key;
+    ids[block][offset] = id;
+    counts[block]++;
+    size++;
+  }
+
+  boolean remove(long key, long id) {
+    if (blockCount == 0) {
+      return false;
+    }
+    int block = findBlock(key, id);
+    int offset = search(block, key, id);
+    if (offset < 0) {
+      return false;
+    }
+    int count = counts[block];
+    System.arraycopy(keys[block], offset + 1, keys[block], offset, count - offset - 1);
+    System.arraycopy(ids[block], offset + 1, ids[block], offset, count - offset - 1);
+    counts[block]--;
+    size--;
+    if (counts[block] == 0 && blockCount > 1) {
+      removeBlock(block);
+    }
+    return true;
+  }
+
+  /**
+   * @return the ids of the entries with from <= key <= to, in key order
+   */
+  long[] range(long from, long to) {
+    if (from > to || size == 0) {
+      return new long[0];
+    }
+    int block = findBlock(from, Long.MIN_VALUE);
+    int offset = -search(block, from, Long.MIN_VALUE) - 1;
+    long[] result = new long[16];
+    int found = 0;
+    for (; block < blockCount; block++, offset = 0) {
+      for (; offset < counts[block]; offset++) {
+        if (keys[block][offset] > to) {
+          return Arrays.copyOf(result, found);
+        }
+        if (found == result.length) {
+          result = Arrays.copyOf(result, found * 2);
+        }
+        result[found++] = ids[block][offset];
+      }
+    }
+    return Arrays.copyOf(result, found);
+  }
+
+  /**
+   * @return the number of entries with from <= key <= to, without visiting them
+   */
+  int count(long from, long to) {
+    if (from > to || size == 0) {
+      return 0;
+    }
+    int first = findBlock(from, Long.MIN_VALUE);
+    int firstOffset = -search(first, from, Long.MIN_VALUE) - 1;
+    int last = findBlock(to, Long.MAX_VALUE);
+    int lastOffset = -search(last, to, Long.MAX_VALUE) - 1;
+    int count = lastOffset - firstOffset;
+    for (int block = first; block < last; block++) {
+      count += counts[block];
+    }
+    return count;
+  }
+
+  /**
+   * @return the ids of the n entries with the largest keys
+   */
+  long[] largest(int n) {
+    long[] result = new long[Math.min(n, size)];
+    int found = 0;
+    for (int block = blockCount - 1; block >= 0 && found < result.length; block--) {
+      for (int offset = counts[block] - 1; offset >= 0 && found < result.length; offset--) {
+        result[found++] = ids[block][offset];
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the smallest key; the index must not be empty
+   */
+  long firstKey() {
+    return keys[0][0];
+  }
+
+  /**
+   * @return the largest key; the index must not be empty
+   */
+  long lastKey() {
+    return keys[blockCount - 1][counts[blockCount - 1] - 1];
+  }
+
+  // Returns the first block whose last entry is not smaller than (key, id),
+  // or the last block if there is none.
+  private int findBlock(long key, long id) {
+    int low = 0;
+    int high = blockCount - 1;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      int last = counts[mid] - 1;
+      if (compare(keys[mid][last], ids[mid][last], key, id) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  // Binary search inside a block, with the same contract as Arrays.binarySearch.
+  private int search(int block, long key, long id) {
+    int low = 0;
+    int high = counts[block] - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = compare(keys[block][mid], ids[block][mid], key, id);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  private static int compare(long key1, long id1, long key2, long id2) {
+    int cmp = Long.compare(key1, key2);
+    return cmp != 0 ? cmp : Long.compare(id1, id2);
+  }
+
+  private void split(int block) {
+    insertBlock(block + 1);
+    int half = BLOCK_SIZE / 2;
+    System.arraycopy(keys[block], half, keys[block + 1], 0, BLOCK_SIZE - half);
+    System.arraycopy(ids[block], half, ids[block + 1], 0, BLOCK_SIZE - half);
+    counts[block] = half;
+    counts[block + 1] = BLOCK_SIZE - half;
+  }
+
+  private void insertBlock(int block) {
+    if (blockCount == keys.length) {
+      keys = Arrays.copyOf(keys, blockCount * 2);
+      ids = Arrays.copyOf(ids, blockCount * 2);
+      counts = Arrays.copyOf(counts, blockCount * 2);
+    }
+    System.arraycopy(keys, block, keys, block + 1, blockCount - block);
+    System.arraycopy(ids, block, ids, block + 1, blockCount - block);
+    System.arraycopy(counts, block, counts, block + 1, blockCount - block);
+    keys[block] = new long[BLOCK_SIZE];
+    ids[block] = new long[BLOCK_SIZE];
+    counts[block] = 0;
+    blockCount++;
+  }
+
+  private void removeBlock(int block) {
+    System.arraycopy(keys, block + 1, keys, block, blockCount - block - 1);
+    System.arraycopy(ids, block + 1, ids, block, blockCount - block - 1);
+    System.arraycopy(counts, block + 1, counts, block, blockCount - block - 1);
+    blockCount--;
+    keys[blockCount] = null;
+    ids[blockCount] = null;
+  }
+
+  /**
+   * Maps a double to a long with the same ordering, so amounts can be used as keys.
+   */
+  static long key(double value) {
+    long bits = Double.doubleToLongBits(value);
+    return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+  }
+
+  /**
+   * Inverse of key(double).
+   */
+  static double value(long key) {
+    return Double.longBitsToDouble(key ^ ((key >> 63) & Long.MAX_VALUE));
+  }
+
+}
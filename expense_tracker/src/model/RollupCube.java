@@ -0,0 +1,250 @@
+package model;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+
+/**
+ * Running totals and counts per category code and time bucket, for days and
+ * months in the local time zone. Every add and remove updates one day and one
+ * month bucket in O(1), so range queries never visit the rows.
+ *
+ * Buckets are kept in pages of 256 consecutive buckets, so only the periods
+ * that have rows take memory, whatever the timestamps are. The pages are
+ * found in a primitive hash table, so an update does not allocate unless it
+ * starts a new page.
+ */
+final class RollupCube {
+
+  private static final int PAGE_SHIFT = 8;
+  private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+  private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+  // Category arguments of the queries that select all or no categories
+  static final int ALL_CATEGORIES = -1;
+  static final int NO_CATEGORY = -2;
+
+  private final ZoneRules zone;
+  // Indexed by category code
+  private Buckets[] days = new Buckets[8];
+  private Buckets[] months = new Buckets[8];
+
+  RollupCube(ZoneId zone) {
+    this.zone = zone.getRules();
+  }
+
+  void add(int code, long time, double amount) {
+    long day = epochDay(time);
+    buckets(code, true).add(day, amount, 1);
+    buckets(code, false).add(epochMonth(day), amount, 1);
+  }
+
+  void remove(int code, long time, double amount) {
+    long day = epochDay(time);
+    buckets(code, true).add(day, -amount, -1);
+    buckets(code, false).add(epochMonth(day), -amount, -1);
+  }
+
+  /**
+   * Adds the daily totals of the category, or of all categories, from fromDay on to the series.
+   */
+  void dailyTotals(int category, long fromDay, double[] series) {
+    totals(days, category, fromDay, series);
+  }
+
+  void monthlyTotals(int category, long fromMonth, double[] series) {
+    totals(months, category, fromMonth, series);
+  }
+
+  private static void totals(Buckets[] byCode, int category, long first, double[] series) {
+    for (int code = 0; code < byCode.length; code++) {
+      if ((category == ALL_CATEGORIES || category == code) && byCode[code] != null) {
+        byCode[code].totals(first, series);
+      }
+    }
+  }
+
+  /**
+   * @return the total of the category, or of all categories, from fromDay to toDay,
+   *         both inclusive, using month buckets for the whole months in between
+   */
+  double total(int category, long fromDay, long toDay) {
+    if (fromDay > toDay) {
+      return 0;
+    }
+    long firstMonth = epochMonth(fromDay);
+    long lastMonth = epochMonth(toDay);
+    if (lastMonth - firstMonth < 2) {
+      return sumDays(category, fromDay, toDay);
+    }
+    // Days up to the end of the first month, whole months, then the days of the last month
+    long firstWholeMonth = firstMonth + 1;
+    long lastMonthStart = firstDayOfMonth(lastMonth);
+    double total = sumDays(category, fromDay, firstDayOfMonth(firstWholeMonth) - 1);
+    double[] wholeMonths = new double[(int) (lastMonth - firstWholeMonth)];
+    monthlyTotals(category, firstWholeMonth, wholeMonths);
+    for (double month : wholeMonths) {
+      total += month;
+    }
+    return total + sumDays(category, lastMonthStart, toDay);
+  }
+
+  private double sumDays(int category, long fromDay, long toDay) {
+    double[] series = new double[(int) (toDay - fromDay + 1)];
+    dailyTotals(category, fromDay, series);
+    double total = 0;
+    for (double day : series) {
+      total += day;
+    }
+    return total;
+  }
+
+  /**
+   * @return an estimate of the bytes held by the bucket pages
+   */
+  long memoryFootprint() {
+    long pages = 0;
+    for (Buckets[] byCode : new Buckets[][] {days, months}) {
+      for (Buckets buckets : byCode) {
+        if (buckets != null) {
+          pages += buckets.size;
+        }
+      }
+    }
+    // a reference to and a compensated sum object per bucket, and a count
+    return pages * PAGE_SIZE * (8 + 32 + 4);
+  }
+
+  long epochDay(long time) {
+    long offset = zone.getOffset(Instant.ofEpochMilli(time)).getTotalSeconds() * 1000L;
+    return Math.floorDiv(time + offset, DAY_MILLIS);
+  }
+
+  static long epochMonth(long epochDay) {
+    LocalDate date = LocalDate.ofEpochDay(epochDay);
+    return (date.getYear() - 1970L) * 12 + date.getMonthValue() - 1;
+  }
+
+  static long firstDayOfMonth(long epochMonth) {
+    return LocalDate.of((int) (1970 + Math.floorDiv(epochMonth, 12)), Math.floorMod(epochMonth, 12) + 1, 1)
+        .toEpochDay();
+  }
+
+  private Buckets buckets(int code, boolean daily) {
+    Buckets[] byCode = daily ? days : months;
+    if (code >= byCode.length) {
+      byCode = Arrays.copyOf(byCode, Math.max(code + 1, byCode.length * 2));
+      if (daily) {
+        days = byCode;
+      } else {
+        months = byCode;
+      }
+    }
+    if (byCode[code] == null) {
+      byCode[code] = new Buckets();
+    }
+    return byCode[code];
+  }
+
+  // Sparse array of compensated sums and counts, one page per 256 buckets,
+  // in an open-addressing table keyed by the page number
+  private static final class Buckets {
+    private long[] keys = new long[8];
+    private Page[] pages = new Page[8];
+    private int size;
+
+    void add(long bucket, double amount, int delta) {
+      long key = bucket >> PAGE_SHIFT;
+      Page page = page(key);
+      if (page == null) {
+        page = new Page();
+        put(key, page);
+      }
+      int i = (int) (bucket & (PAGE_SIZE - 1));
+      // Compensated, so removals do not leave rounding errors behind
+      page.sums[i].add(amount);
+      page.counts[i] += delta;
+      if (page.counts[i] == 0) {
+        // An empty bucket is exactly zero again
+        page.sums[i].clear();
+      }
+    }
+
+    private Page page(long key) {
+      int mask = pages.length - 1;
+      for (int slot = slot(key, mask); pages[slot] != null; slot = (slot + 1) & mask) {
+        if (keys[slot] == key) {
+          return pages[slot];
+        }
+      }
+      return null;
+    }
+
+    private void put(long key, Page page) {
+      if ((size + 1) * 2 > pages.length) {
+        long[] oldKeys = keys;
+        Page[] oldPages = pages;
+        keys = new long[oldPages.length * 2];
+        pages = new Page[oldPages.length * 2];
+        for (int i = 0; i < oldPages.length; i++) {
+          if (oldPages[i] != null) {
+            insert(oldKeys[i], oldPages[i]);
+          }
+        }
+      }
+      insert(key, page);
+      size++;
+    }
+
+    private void insert(long key, Page page) {
+      int mask = pages.length - 1;
+      int slot = slot(key, mask);
+      while (pages[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = key;
+      pages[slot] = page;
+    }
+
+    // Consecutive page numbers are spread over the table
+    private static int slot(long key, int mask) {
+      long hash = key * 0x9E3779B97F4A7C15L;
+      return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    // Adds the totals of the buckets from first on to the series
+    void totals(long first, double[] series) {
+      Page page = null;
+      long pageKey = 0;
+      for (int i = 0; i < series.length; i++) {
+        long bucket = first + i;
+        if (page == null || bucket >> PAGE_SHIFT != pageKey) {
+          pageKey = bucket >> PAGE_SHIFT;
+          page = page(pageKey);
+          if (page == null) {
+            // Skip to the first bucket of the next page
+            int skip = (int) Math.min(series.length - i, PAGE_SIZE - (bucket & (PAGE_SIZE - 1)));
+            i += skip - 1;
+            continue;
+          }
+        }
+        int offset = (int) (bucket & (PAGE_SIZE - 1));
+        series[i] += page.sums[offset].value();
+      }
+    }
+  }
+
+  private static final class Page {
+    final CompensatedSum[] sums = new CompensatedSum[PAGE_SIZE];
+    final int[] counts = new int[PAGE_SIZE];
+
+    Page() {
+      for (int i = 0; i < PAGE_SIZE; i++) {
+        sums[i] = new CompensatedSum();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,56 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A growable, sorted set of row ids backed by a primitive array.
+ *
+ * Row ids are handed out in increasing order, so adding the newest row is an
+ * append. Removing a row or putting an old one back shifts the ids after it.
+ */
+class RowIdSet {
+
+  private long[] ids = new long[16];
+  private int size;
+
+  int size() {
+    return size;
+  }
+
+  void add(long id) {
+    if (size == ids.length) {
+      ids = Arrays.copyOf(ids, size * 2);
+    }
+    if (size == 0 || ids[size - 1] < id) {
+      ids[size++] = id;
+      return;
+    }
+    int index = Arrays.binarySearch(ids, 0, size, id);
+    if (index >= 0) {
+      return;
+    }
+    index = -index - 1;
+    System.arraycopy(ids, index, ids, index + 1, size - index);
+    ids[index] = id;
+    size++;
+  }
+
+  boolean remove(long id) {
+    int index = Arrays.binarySearch(ids, 0, size, id);
+    if (index < 0) {
+      return false;
+    }
+    System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+    size--;
+    return true;
+  }
+
+  long[] toArray() {
+    return Arrays.copyOf(ids, size);
+  }
+
+  boolean contains(long id) {
+    return Arrays.binarySearch(ids, 0, size, id) >= 0;
+  }
+
+}
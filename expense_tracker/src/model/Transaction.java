@@ -3,31 +3,67 @@ package model;
 import controller.InputValidation;
 
 import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.List;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
 public class Transaction {
 
-  public static final SimpleDateFormat dateFormatter = new SimpleDateFormat("dd-MM-yyyy HH:mm");
+  public static final String DATE_PATTERN = "dd-MM-yyyy HH:mm";
+
+  // Not thread-safe; use formatTime to format. Kept for parsing timestamps on one thread.
+  public static final SimpleDateFormat dateFormatter = new SimpleDateFormat(DATE_PATTERN);
+
+  private static final DateTimeFormatter TIME_FORMATTER =
+      DateTimeFormatter.ofPattern(DATE_PATTERN).withZone(ZoneId.systemDefault());
+  // The most recently formatted minute. Rows added close together share it,
+  // so most calls do not format at all.
+  private static volatile FormattedMinute lastFormatted = new FormattedMinute(Long.MIN_VALUE, null);
     
   //final means that the variable cannot be changed
   private final double amount;
   private final String category;
-  private final String timestamp;
+  private final long time;
+  // Formatted on first use; the race between two threads formatting it is harmless
+  private String timestamp;
+  // Id of the row backing this transaction in the model's store, or UNASSIGNED
+  private long id;
+
+  static final long UNASSIGNED = -1;
 
   public Transaction(double amount, String category) {
+    this(amount, category, InputValidation.getValidator());
+  }
+
+  /**
+   * Validates the transaction with the given rules, e.g. those of the model it
+   * is added to.
+   */
+  public Transaction(double amount, String category, TransactionValidator validator) {
     // Since this is a public constructor, perform input validation
     // to guarantee that the amount and category are both valid
-    if (InputValidation.isValidAmount(amount) == false) {
+    if (validator.isValidAmount(amount) == false) {
 	throw new IllegalArgumentException("The amount is not valid.");
     }
-    if (InputValidation.isValidCategory(category) == false) {
+    // Valid categories map to one shared lower-case name
+    String canonical = validator.canonical(category);
+    if (canonical == null) {
 	throw new IllegalArgumentException("The category is not valid.");
     }
       
+    this.amount = amount;
+    this.category = canonical;
+    this.time = System.currentTimeMillis();
+    this.id = UNASSIGNED;
+  }
+
+  // Package-private constructor used by the TransactionStore to create a view
+  // over a stored row. The values were validated when the row was added.
+  Transaction(long id, double amount, String category, long time) {
     this.amount = amount;
     this.category = category;
-    this.timestamp = generateTimestamp();
+    this.time = time;
+    this.id = id;
   }
 
   public double getAmount() {
@@ -48,11 +84,70 @@ public class Transaction {
   // }
   
   public String getTimestamp() {
-    return timestamp;
+    String formatted = timestamp;
+    if (formatted == null) {
+      formatted = formatTime(time);
+      timestamp = formatted;
+    }
+    return formatted;
+  }
+
+  // Epoch milliseconds of the timestamp
+  public long getTime() {
+    return time;
+  }
+
+  long getId() {
+    return id;
+  }
+
+  // Called by the model once the transaction has been stored
+  void bind(long id) {
+    if (this.id == UNASSIGNED) {
+      this.id = id;
+    }
+  }
+
+  /**
+   * Formats epoch milliseconds like the timestamps of transactions. Can be
+   * called from any thread.
+   */
+  public static String formatTime(long time) {
+    long minute = Math.floorDiv(time, 60000L);
+    FormattedMinute last = lastFormatted;
+    if (last.minute == minute) {
+      return last.text;
+    }
+    String text = TIME_FORMATTER.format(Instant.ofEpochMilli(time));
+    lastFormatted = new FormattedMinute(minute, text);
+    return text;
+  }
+
+  private static final class FormattedMinute {
+    final long minute;
+    final String text;
+
+    FormattedMinute(long minute, String text) {
+      this.minute = minute;
+      this.text = text;
+    }
   }
-  //private helper method to generate timestamp
-  private String generateTimestamp() {
-     return dateFormatter.format(new Date());
+
+  // Two transactions are equal when they are views over the same stored row.
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof Transaction)) {
+      return false;
+    }
+    return id != UNASSIGNED && id == ((Transaction) other).id;
+  }
+
+  @Override
+  public int hashCode() {
+    return id == UNASSIGNED ? System.identityHashCode(this) : Long.hashCode(id);
   }
 
 }
@@ -0,0 +1,162 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Checkpoint file of a TransactionStore, so that only the log records written
+ * after it have to be replayed at startup.
+ *
+ * The file holds a header, the category dictionary and then the rows as
+ * fixed-width little-endian columns: amounts, times and ids (8 bytes per row)
+ * followed by the category codes (4 bytes per row). The columns are read
+ * through FileChannel.map, which lets the operating system page them in with
+ * read-ahead and copies each chunk with a single bulk get, instead of decoding
+ * the rows one record at a time.
+ */
+final class TransactionCheckpoint {
+
+  private static final int MAGIC = 0x45544350;
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE = 40;
+  private static final int BUFFER_SIZE = 1 << 17;
+
+  private TransactionCheckpoint() {
+  }
+
+  /**
+   * Writes the snapshot to a temporary file and moves it over the checkpoint,
+   * so a crash leaves either the old or the new checkpoint.
+   *
+   * @param logPosition the position of the log the snapshot was taken at
+   */
+  static void write(Path path, TransactionSnapshot snapshot, long nextId, long logPosition) throws IOException {
+    Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+    int rows = snapshot.size();
+    int categoryCount = snapshot.categoryCount();
+    byte[][] names = new byte[categoryCount][];
+    int dictionarySize = 0;
+    for (int code = 0; code < categoryCount; code++) {
+      names[code] = snapshot.categoryName(code).getBytes(StandardCharsets.UTF_8);
+      dictionarySize += 2 + names[code].length;
+    }
+    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(rows).putLong(nextId).putLong(logPosition)
+          .putInt(categoryCount).putInt(dictionarySize);
+      for (byte[] name : names) {
+        ensureRemaining(channel, buffer, 2 + name.length);
+        buffer.putShort((short) name.length).put(name);
+      }
+      // Align the columns to 8 bytes
+      ensureRemaining(channel, buffer, 8);
+      buffer.put(new byte[columnsOffset(dictionarySize) - HEADER_SIZE - dictionarySize]);
+      for (int row = 0; row < rows; row++) {
+        ensureRemaining(channel, buffer, 8);
+        buffer.putDouble(snapshot.amountAt(row));
+      }
+      for (int row = 0; row < rows; row++) {
+        ensureRemaining(channel, buffer, 8);
+        buffer.putLong(snapshot.timeAt(row));
+      }
+      for (int row = 0; row < rows; row++) {
+        ensureRemaining(channel, buffer, 8);
+        buffer.putLong(snapshot.idAt(row));
+      }
+      for (int row = 0; row < rows; row++) {
+        ensureRemaining(channel, buffer, 4);
+        buffer.putInt(snapshot.categoryCodeAt(row));
+      }
+      flush(channel, buffer);
+      channel.force(true);
+    }
+    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Loads the checkpoint into the given empty store.
+   *
+   * @return the log position to continue the replay at, or 0 if there is no checkpoint
+   */
+  static long load(Path path, TransactionStore store) throws IOException {
+    if (!Files.exists(path)) {
+      return 0;
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long fileSize = channel.size();
+      if (fileSize < HEADER_SIZE) {
+        throw new IOException("Not a transaction checkpoint");
+      }
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE)
+          .order(ByteOrder.LITTLE_ENDIAN);
+      if (header.getInt() != MAGIC) {
+        throw new IOException("Not a transaction checkpoint");
+      }
+      if (header.getInt() != FORMAT_VERSION) {
+        throw new IOException("Unsupported transaction checkpoint version");
+      }
+      long rows = header.getLong();
+      long nextId = header.getLong();
+      long logPosition = header.getLong();
+      int categoryCount = header.getInt();
+      int dictionarySize = header.getInt();
+      long offset = columnsOffset(dictionarySize);
+      if (rows < 0 || rows > Integer.MAX_VALUE || categoryCount < 0
+          || fileSize != offset + rows * (8 + 8 + 8 + 4)) {
+        throw new IOException("The transaction checkpoint is damaged");
+      }
+
+      ByteBuffer dictionary = map(channel, HEADER_SIZE, dictionarySize);
+      String[] names = new String[categoryCount];
+      byte[] name = new byte[0xFFFF];
+      for (int code = 0; code < categoryCount; code++) {
+        int length = dictionary.getShort() & 0xFFFF;
+        dictionary.get(name, 0, length);
+        names[code] = new String(name, 0, length, StandardCharsets.UTF_8);
+      }
+
+      int size = (int) rows;
+      store.load(names, categoryCount,
+          map(channel, offset, 8 * rows).asDoubleBuffer(),
+          map(channel, offset + 8 * rows, 8 * rows).asLongBuffer(),
+          map(channel, offset + 16 * rows, 8 * rows).asLongBuffer(),
+          map(channel, offset + 24 * rows, 4 * rows).asIntBuffer(),
+          size, nextId);
+      return logPosition;
+    }
+  }
+
+  private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    return buffer;
+  }
+
+  private static int columnsOffset(int dictionarySize) {
+    return (HEADER_SIZE + dictionarySize + 7) & ~7;
+  }
+
+  private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+    if (buffer.remaining() < bytes) {
+      flush(channel, buffer);
+    }
+  }
+
+  private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+}
@@ -0,0 +1,13 @@
+package model;
+
+/**
+ * Observer of the ExpenseTrackerModel. The model calls it after every change,
+ * with the positions of the rows that were inserted or removed.
+ */
+public interface TransactionListener {
+
+  public void transactionsInserted(int firstRow, int lastRow);
+
+  public void transactionsRemoved(int firstRow, int lastRow);
+
+}
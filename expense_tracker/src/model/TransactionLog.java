@@ -0,0 +1,327 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary write-ahead log of the changes to a TransactionStore.
+ *
+ * The store writes a record for every append, insert and removal into an
+ * in-memory buffer. Callers then wait in sync until the record is on disk.
+ * Whoever calls sync first writes and forces everything buffered so far, while
+ * the others wait for that flush to cover their records, so concurrent writers
+ * share one fsync (group commit).
+ *
+ * Every record is a type byte, a fixed-size payload (a length-prefixed name
+ * for categories) and a CRC32 of both. Row ids are not logged: replaying the
+ * records in order hands out the same ids again.
+ */
+final class TransactionLog {
+
+  private static final int MAGIC = 0x45544C47;
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE = 8;
+
+  static final byte CATEGORY = 1;
+  static final byte APPEND = 2;
+  static final byte INSERT = 3;
+  static final byte REMOVE = 4;
+
+  private final FileChannel channel;
+  private final CRC32 crc = new CRC32();
+  // Records not yet written; swapped with writing while a flush is in progress
+  private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+  private ByteBuffer writing = ByteBuffer.allocate(1 << 16);
+  // Log positions in bytes
+  private long appended;
+  private long durable;
+  private boolean flushing;
+  // Set when a flush failed; the lost batch can no longer be made durable
+  private IOException failure;
+
+  private TransactionLog(FileChannel channel, long size) {
+    this.channel = channel;
+    this.appended = size;
+    this.durable = size;
+  }
+
+  /**
+   * Opens the log, creating it if needed, and replays its records from the
+   * given position on into the store. A torn or corrupt record at the end, left
+   * by a crash during a write, is cut off together with everything after it. A
+   * header torn by a crash while the log was created is written again.
+   *
+   * @param from the log position of the checkpoint the store was loaded from, or 0
+   */
+  static TransactionLog open(Path path, TransactionStore store, long from) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    try {
+      long size = channel.size();
+      if (from > Math.max(size, HEADER_SIZE)) {
+        throw new IOException("The transaction log is older than its checkpoint");
+      }
+      if (size < HEADER_SIZE) {
+        // New, or cut short while the header was written, so it holds no records yet
+        ByteBuffer header = header();
+        ByteBuffer written = ByteBuffer.allocate((int) size);
+        while (written.hasRemaining()) {
+          if (channel.read(written, written.position()) < 0) {
+            break;
+          }
+        }
+        written.flip();
+        if (!written.equals(header.duplicate().limit((int) size))) {
+          throw new IOException("Not a transaction log");
+        }
+        while (header.hasRemaining()) {
+          channel.write(header, header.position());
+        }
+        channel.force(true);
+        size = HEADER_SIZE;
+      } else {
+        long valid = replay(channel, store, Math.max(from, HEADER_SIZE));
+        if (valid < size) {
+          channel.truncate(valid);
+          channel.force(true);
+          size = valid;
+        }
+      }
+      channel.position(size);
+      return new TransactionLog(channel, size);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private static ByteBuffer header() {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+    return header;
+  }
+
+  // Applies the records to the store and returns the end of the last valid one
+  private static long replay(FileChannel channel, TransactionStore store, long from) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    while (header.hasRemaining()) {
+      if (channel.read(header, header.position()) < 0) {
+        break;
+      }
+    }
+    header.flip();
+    if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+      throw new IOException("Not a transaction log");
+    }
+    if (header.getInt() != FORMAT_VERSION) {
+      throw new IOException("Unsupported transaction log version");
+    }
+    channel.position(from);
+    InputStream stream = Channels.newInputStream(channel);
+    DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+    long valid = from;
+    // The codes of the records are those of the store, which may already hold a checkpoint
+    List<String> categories = new ArrayList<>();
+    for (int code = 0; code < store.categoryCount(); code++) {
+      categories.add(store.categoryName(code));
+    }
+    CRC32 crc = new CRC32();
+    byte[] record = new byte[1 + 2 + 0xFFFF];
+    while (true) {
+      int length;
+      try {
+        record[0] = in.readByte();
+        length = payloadLength(record[0], in, record);
+        if (length < 0) {
+          return valid;
+        }
+        in.readFully(record, 1 + (record[0] == CATEGORY ? 2 : 0), length);
+        int recordLength = 1 + (record[0] == CATEGORY ? 2 : 0) + length;
+        crc.reset();
+        crc.update(record, 0, recordLength);
+        if (in.readInt() != (int) crc.getValue()) {
+          return valid;
+        }
+        apply(ByteBuffer.wrap(record, 0, recordLength), store, categories);
+        valid += recordLength + 4;
+      } catch (EOFException e) {
+        return valid;
+      }
+    }
+  }
+
+  // Reads the length prefix of variable-size records; -1 for an unknown type
+  private static int payloadLength(byte type, DataInputStream in, byte[] record) throws IOException {
+    switch (type) {
+      case CATEGORY:
+        in.readFully(record, 1, 2);
+        return ((record[1] & 0xFF) << 8) | (record[2] & 0xFF);
+      case APPEND:
+        return 8 + 4 + 8;
+      case INSERT:
+        return 4 + 8 + 8 + 4 + 8;
+      case REMOVE:
+        return 4;
+      default:
+        return -1;
+    }
+  }
+
+  private static void apply(ByteBuffer record, TransactionStore store, List<String> categories) {
+    byte type = record.get();
+    switch (type) {
+      case CATEGORY:
+        int length = record.getShort() & 0xFFFF;
+        categories.add(new String(record.array(), record.position(), length, StandardCharsets.UTF_8));
+        break;
+      case APPEND:
+        double amount = record.getDouble();
+        int code = record.getInt();
+        store.append(amount, categories.get(code), record.getLong());
+        break;
+      case INSERT:
+        int row = record.getInt();
+        long id = record.getLong();
+        double insertedAmount = record.getDouble();
+        int insertedCode = store.categoryCode(categories.get(record.getInt()));
+        store.insert(row, id, insertedAmount, insertedCode, record.getLong());
+        break;
+      default:
+        store.remove(record.getInt());
+        break;
+    }
+  }
+
+  synchronized void category(String name) {
+    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > 0xFFFF) {
+      throw new IllegalArgumentException("The category name is too long.");
+    }
+    ByteBuffer buffer = reserve(1 + 2 + bytes.length);
+    buffer.put(CATEGORY).putShort((short) bytes.length).put(bytes);
+    seal(buffer);
+  }
+
+  synchronized void append(double amount, int code, long time) {
+    ByteBuffer buffer = reserve(1 + 8 + 4 + 8);
+    buffer.put(APPEND).putDouble(amount).putInt(code).putLong(time);
+    seal(buffer);
+  }
+
+  synchronized void insert(int row, long id, double amount, int code, long time) {
+    ByteBuffer buffer = reserve(1 + 4 + 8 + 8 + 4 + 8);
+    buffer.put(INSERT).putInt(row).putLong(id).putDouble(amount).putInt(code).putLong(time);
+    seal(buffer);
+  }
+
+  synchronized void remove(int row) {
+    ByteBuffer buffer = reserve(1 + 4);
+    buffer.put(REMOVE).putInt(row);
+    seal(buffer);
+  }
+
+  /**
+   * @return the log position after the last record written so far
+   */
+  synchronized long position() {
+    return appended;
+  }
+
+  /**
+   * Blocks until the log is durable up to the given position.
+   */
+  void sync(long position) throws IOException {
+    long target;
+    ByteBuffer batch;
+    synchronized (this) {
+      while (durable < position && flushing) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while waiting for the log", e);
+        }
+      }
+      if (durable >= position) {
+        return;
+      }
+      // Checked after waiting, since the flush waited for may have failed: a
+      // batch written after the lost one would leave a gap in the log
+      if (failure != null) {
+        throw new IOException("The transaction log could not be written", failure);
+      }
+      // Become the leader: take everything buffered so far and flush it for all waiters
+      flushing = true;
+      batch = pending;
+      pending = writing;
+      writing = batch;
+      target = appended;
+    }
+    boolean written = false;
+    try {
+      batch.flip();
+      while (batch.hasRemaining()) {
+        channel.write(batch);
+      }
+      channel.force(false);
+      written = true;
+    } catch (IOException e) {
+      synchronized (this) {
+        failure = e;
+      }
+      throw e;
+    } finally {
+      batch.clear();
+      synchronized (this) {
+        flushing = false;
+        if (written) {
+          durable = target;
+        }
+        notifyAll();
+      }
+    }
+  }
+
+  void close() throws IOException {
+    sync(position());
+    channel.close();
+  }
+
+  // Makes room for a record, leaving the buffer positioned at its start
+  private ByteBuffer reserve(int length) {
+    int needed = length + 4;
+    if (pending.remaining() < needed) {
+      ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + needed));
+      pending.flip();
+      larger.put(pending);
+      pending = larger;
+    }
+    pending.mark();
+    return pending;
+  }
+
+  // Appends the CRC of the record written since reserve
+  private void seal(ByteBuffer buffer) {
+    int end = buffer.position();
+    buffer.reset();
+    int start = buffer.position();
+    crc.reset();
+    crc.update(buffer.array(), start, end - start);
+    buffer.position(end);
+    buffer.putInt((int) crc.getValue());
+    appended += buffer.position() - start;
+  }
+
+}
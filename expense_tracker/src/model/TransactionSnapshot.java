@@ -0,0 +1,268 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Immutable, version-stamped view of the transactions stored at one point in time.
+ *
+ * A snapshot shares the column chunks of the TransactionStore instead of copying
+ * them. The store copies a chunk before it writes into a part that a snapshot
+ * can still see, so the rows of a snapshot never change, while the store keeps
+ * appending. Transactions are materialized on each get.
+ */
+public class TransactionSnapshot extends AbstractList<Transaction> implements RandomAccess {
+
+  private static final int CHUNK_SHIFT = TransactionStore.CHUNK_SHIFT;
+  private static final int CHUNK_MASK = TransactionStore.CHUNK_MASK;
+
+  private final double[][] amounts;
+  private final int[][] categories;
+  private final long[][] times;
+  private final long[][] ids;
+  private final String[] categoryNames;
+  private final int categoryCount;
+  private final int size;
+  private final long version;
+  private final double totalAmount;
+  // The store the snapshot was taken from, used to reach its indexes
+  private final TransactionStore store;
+
+  TransactionSnapshot(TransactionStore store, double[][] amounts, int[][] categories, long[][] times,
+                      long[][] ids, String[] categoryNames, int categoryCount, int size, long version,
+                      double totalAmount) {
+    this.store = store;
+    this.amounts = amounts;
+    this.categories = categories;
+    this.times = times;
+    this.ids = ids;
+    this.categoryNames = categoryNames;
+    this.categoryCount = categoryCount;
+    this.size = size;
+    this.version = version;
+    this.totalAmount = totalAmount;
+  }
+
+  /**
+   * @return the modification version of the store this snapshot was taken at
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * @return the total amount of the rows in this snapshot, from the model's running total
+   */
+  public double getTotalAmount() {
+    return totalAmount;
+  }
+
+  /**
+   * @return true if the store has not been modified since this snapshot was taken
+   */
+  public boolean isCurrent() {
+    synchronized (store) {
+      return store.getVersion() == version;
+    }
+  }
+
+  /**
+   * Finds the rows of a category (ignoring case) through the store's category index,
+   * in O(matches) rather than a scan over all rows.
+   *
+   * @return the sorted row positions, or null if the snapshot is no longer current
+   *         and the index cannot be used
+   */
+  public int[] rowsWithCategory(String category) {
+    return rowsWithCategory(categoryCode(category));
+  }
+
+  /**
+   * Finds the rows of a category code through the store's category index.
+   *
+   * @return the sorted row positions, or null if the snapshot is no longer current
+   */
+  public int[] rowsWithCategory(int code) {
+    synchronized (store) {
+      return isCurrent() ? store.rowsWithCategory(code) : null;
+    }
+  }
+
+  /**
+   * @return the number of rows in the category (ignoring case) from the category index,
+   *         or -1 if the snapshot is no longer current
+   */
+  public int countWithCategory(String category) {
+    return countWithCategory(categoryCode(category));
+  }
+
+  public int countWithCategory(int code) {
+    synchronized (store) {
+      return isCurrent() ? store.countWithCategory(code) : -1;
+    }
+  }
+
+  /**
+   * Finds the rows with min <= amount <= max through the store's amount index,
+   * in O(log n + matches).
+   *
+   * @return the sorted row positions, or null if the snapshot is no longer current
+   */
+  public int[] rowsWithAmountBetween(double min, double max) {
+    synchronized (store) {
+      return isCurrent() ? store.rowsWithAmountBetween(min, max) : null;
+    }
+  }
+
+  /**
+   * @return the number of rows with min <= amount <= max from the amount index,
+   *         or -1 if the snapshot is no longer current
+   */
+  public int countWithAmountBetween(double min, double max) {
+    synchronized (store) {
+      return isCurrent() ? store.countWithAmountBetween(min, max) : -1;
+    }
+  }
+
+  /**
+   * Finds the n rows with the largest amounts through the store's amount index.
+   * Among equal amounts the newer rows are preferred.
+   *
+   * @return the sorted row positions, or null if the snapshot is no longer current
+   */
+  public int[] rowsWithLargestAmounts(int n) {
+    synchronized (store) {
+      return isCurrent() ? store.rowsWithLargestAmounts(n) : null;
+    }
+  }
+
+  /**
+   * Finds the rows with from <= time <= to (epoch milliseconds) through the
+   * store's time index, in O(log n + matches).
+   *
+   * @return the sorted row positions, or null if the snapshot is no longer current
+   */
+  public int[] rowsWithTimeBetween(long from, long to) {
+    synchronized (store) {
+      return isCurrent() ? store.rowsWithTimeBetween(from, to) : null;
+    }
+  }
+
+  /**
+   * @return the number of rows with from <= time <= to from the time index,
+   *         or -1 if the snapshot is no longer current
+   */
+  public int countWithTimeBetween(long from, long to) {
+    synchronized (store) {
+      return isCurrent() ? store.countWithTimeBetween(from, to) : -1;
+    }
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Transaction get(int row) {
+    checkRow(row);
+    int c = row >>> CHUNK_SHIFT;
+    int i = row & CHUNK_MASK;
+    return new Transaction(ids[c][i], amounts[c][i], categoryNames[categories[c][i]], times[c][i]);
+  }
+
+  public double amountAt(int row) {
+    checkRow(row);
+    return amounts[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+  }
+
+  public int categoryCodeAt(int row) {
+    checkRow(row);
+    return categories[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+  }
+
+  public String categoryAt(int row) {
+    return categoryNames[categoryCodeAt(row)];
+  }
+
+  /**
+   * @return the number of entries in the category dictionary of this snapshot
+   */
+  public int categoryCount() {
+    return categoryCount;
+  }
+
+  /**
+   * @return the code of the category (ignoring case), or -1 if no row of this
+   *         snapshot can have it
+   */
+  public int categoryCode(String category) {
+    int code;
+    synchronized (store) {
+      code = store.categoryCode(category);
+    }
+    // Categories registered after the snapshot was taken have no rows in it
+    return code < categoryCount ? code : -1;
+  }
+
+  public String categoryName(int code) {
+    if (code < 0 || code >= categoryCount) {
+      throw new IndexOutOfBoundsException("Category code: " + code);
+    }
+    return categoryNames[code];
+  }
+
+  public long timeAt(int row) {
+    checkRow(row);
+    return times[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+  }
+
+  public long idAt(int row) {
+    checkRow(row);
+    return ids[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+  }
+
+  /**
+   * Binary search for the row holding the given id.
+   *
+   * @return the row position, or -1 if this snapshot has no row with this id
+   */
+  public int positionOf(long id) {
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midId = ids[mid >>> CHUNK_SHIFT][mid & CHUNK_MASK];
+      if (midId < id) {
+        low = mid + 1;
+      } else if (midId > id) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public int indexOf(Object o) {
+    // Stored transactions are identified by their row id.
+    if (!(o instanceof Transaction)) {
+      return -1;
+    }
+    long id = ((Transaction) o).getId();
+    return id == Transaction.UNASSIGNED ? -1 : positionOf(id);
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return indexOf(o) != -1;
+  }
+
+  private void checkRow(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size);
+    }
+  }
+
+}
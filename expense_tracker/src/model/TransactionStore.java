@@ -0,0 +1,577 @@
+package model;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar storage for the transactions of the ExpenseTrackerModel.
+ *
+ * Every row is kept in parallel primitive columns (amount, dictionary encoded
+ * category, epoch timestamp and row id). The columns grow in fixed-size chunks,
+ * so appending never copies the existing rows. Transaction objects are only
+ * created on demand as views over a row.
+ *
+ * Chunks are shared with the TransactionSnapshots taken from the store and are
+ * copied on write, one chunk at a time.
+ *
+ * The store is not synchronized itself. When it is shared between threads,
+ * every access has to hold the store's lock, as the ExpenseTrackerModel does.
+ */
+public class TransactionStore {
+
+  static final int CHUNK_SHIFT = 12;
+  static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private double[][] amounts;
+  private int[][] categories;
+  private long[][] times;
+  // Row ids are handed out in increasing order, so this column is always sorted.
+  private long[][] ids;
+  // Rows below sharedLimit[c] in chunk c may be read by a snapshot, so the chunk
+  // has to be copied before one of them is overwritten.
+  private int[] sharedLimit;
+  private int chunkCount;
+  private int size;
+  private long nextId;
+  private long version;
+  private TransactionSnapshot snapshot;
+
+  // Category dictionary: the category column, indexes and aggregates use its codes
+  private final CategoryRegistry registry;
+
+  private final CategoryIndex categoryIndex;
+  private final OrderedIndex amountIndex;
+  // Keyed by the epoch time itself, which is already ordered as a long
+  private final OrderedIndex timeIndex;
+  private final LedgerAggregates aggregates;
+  private final RollupCube rollups;
+  // Receives a record of every change, if the store is persistent
+  private TransactionLog log;
+
+  public TransactionStore() {
+    amounts = new double[4][];
+    categories = new int[4][];
+    times = new long[4][];
+    ids = new long[4][];
+    sharedLimit = new int[4];
+    registry = new CategoryRegistry();
+    categoryIndex = new CategoryIndex();
+    amountIndex = new OrderedIndex();
+    timeIndex = new OrderedIndex();
+    aggregates = new LedgerAggregates(registry);
+    rollups = new RollupCube(ZoneId.systemDefault());
+  }
+
+  /**
+   * Starts writing every change to the given log.
+   */
+  void attach(TransactionLog log) {
+    this.log = log;
+  }
+
+  /**
+   * Fills the empty store from columns, e.g. those of a checkpoint, copying one
+   * chunk at a time. The indexes are then built in a single pass over the rows.
+   */
+  void load(String[] names, int categoryCount, DoubleBuffer amountColumn, LongBuffer timeColumn,
+            LongBuffer idColumn, IntBuffer categoryColumn, int rows, long nextId) {
+    if (size != 0 || registry.size() != 0) {
+      throw new IllegalStateException("The store is not empty.");
+    }
+    // Names that only differ in case are merged into one code
+    int[] codes = new int[categoryCount];
+    boolean remap = false;
+    for (int code = 0; code < categoryCount; code++) {
+      codes[code] = encode(names[code]);
+      remap |= codes[code] != code;
+    }
+    while (chunkCount << CHUNK_SHIFT < rows) {
+      addChunk();
+    }
+    for (int c = 0; c < chunkCount; c++) {
+      int length = Math.min(CHUNK_SIZE, rows - (c << CHUNK_SHIFT));
+      amountColumn.get(amounts[c], 0, length);
+      timeColumn.get(times[c], 0, length);
+      idColumn.get(ids[c], 0, length);
+      categoryColumn.get(categories[c], 0, length);
+    }
+    for (int row = 0; row < rows; row++) {
+      int c = row >>> CHUNK_SHIFT;
+      int i = row & CHUNK_MASK;
+      if (categories[c][i] < 0 || categories[c][i] >= categoryCount
+          || (row > 0 && idAt(row - 1) >= ids[c][i]) || ids[c][i] >= nextId) {
+        size = row;
+        throw new IllegalArgumentException("Invalid row: " + row);
+      }
+      if (remap) {
+        categories[c][i] = codes[categories[c][i]];
+      }
+      index(ids[c][i], amounts[c][i], categories[c][i], times[c][i]);
+      size = row + 1;
+    }
+    this.nextId = nextId;
+    version++;
+  }
+
+  /**
+   * @return the id the next appended row will get
+   */
+  long nextId() {
+    return nextId;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the modification version, incremented by every change to the rows
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  public double amountAt(int row) {
+    checkRow(row);
+    return amounts[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+  }
+
+  public int categoryCodeAt(int row) {
+    checkRow(row);
+    return categories[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+  }
+
+  public String categoryAt(int row) {
+    return registry.name(categoryCodeAt(row));
+  }
+
+  public long timeAt(int row) {
+    checkRow(row);
+    return times[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+  }
+
+  public long idAt(int row) {
+    checkRow(row);
+    return ids[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+  }
+
+  /**
+   * @return an estimate of the bytes held by the columns, the indexes, the
+   *         aggregates and the rollups
+   */
+  public long memoryFootprint() {
+    // amount, category code, time and id per allocated row
+    long columns = ((long) chunkCount << CHUNK_SHIFT) * (8 + 4 + 8 + 8);
+    // an id per row in the category index
+    long indexes = amountIndex.memoryFootprint() + timeIndex.memoryFootprint() + (long) size * 8;
+    return columns + indexes + aggregates.memoryFootprint() + rollups.memoryFootprint();
+  }
+
+  /**
+   * @return the dictionary code of the category (ignoring case), or -1 if it is not registered
+   */
+  public int categoryCode(String category) {
+    return registry.code(category);
+  }
+
+  /**
+   * @return the normalized (lower case) name of the category code
+   */
+  public String categoryName(int code) {
+    return registry.name(code);
+  }
+
+  public int categoryCount() {
+    return registry.size();
+  }
+
+  /**
+   * Registers a category without adding a row, e.g. before rows of it arrive.
+   *
+   * @return the code of the category
+   */
+  public int registerCategory(String category) {
+    return encode(category);
+  }
+
+  /**
+   * @return the number of rows in the category, ignoring case
+   */
+  public int categoryRowCount(String category) {
+    return categoryIndex.count(registry.code(category));
+  }
+
+  /**
+   * @return the total amount of all rows, kept as a running compensated sum
+   */
+  public double totalAmount() {
+    return aggregates.total();
+  }
+
+  /**
+   * @return the count, total, min and max of the category, ignoring case
+   */
+  public CategorySummary categorySummary(String category) {
+    int code = registry.code(category);
+    if (code == -1) {
+      return new CategorySummary(category.toLowerCase(), 0, 0, Double.NaN, Double.NaN);
+    }
+    return aggregates.summary(code);
+  }
+
+  public List<CategorySummary> categorySummaries() {
+    return aggregates.summaries();
+  }
+
+  /**
+   * @param category the category (ignoring case), or null for all categories
+   * @return the total per day from one date to the other, both inclusive, from the rollups
+   */
+  public double[] dailyTotals(String category, LocalDate from, LocalDate to) {
+    double[] series = new double[seriesLength(from.toEpochDay(), to.toEpochDay())];
+    rollups.dailyTotals(rollupCode(category), from.toEpochDay(), series);
+    return series;
+  }
+
+  /**
+   * @param category the category (ignoring case), or null for all categories
+   * @return the total per month from one month to the other, both inclusive, from the rollups
+   */
+  public double[] monthlyTotals(String category, YearMonth from, YearMonth to) {
+    long first = RollupCube.epochMonth(from.atDay(1).toEpochDay());
+    double[] series = new double[seriesLength(first, RollupCube.epochMonth(to.atDay(1).toEpochDay()))];
+    rollups.monthlyTotals(rollupCode(category), first, series);
+    return series;
+  }
+
+  /**
+   * @param category the category (ignoring case), or null for all categories
+   * @return the total from one date to the other, both inclusive, from the rollups
+   */
+  public double totalBetween(String category, LocalDate from, LocalDate to) {
+    return rollups.total(rollupCode(category), from.toEpochDay(), to.toEpochDay());
+  }
+
+  // Null selects all categories; an unknown category selects none
+  private int rollupCode(String category) {
+    if (category == null) {
+      return RollupCube.ALL_CATEGORIES;
+    }
+    int code = registry.code(category);
+    return code == -1 ? RollupCube.NO_CATEGORY : code;
+  }
+
+  private static int seriesLength(long first, long last) {
+    if (first > last || last - first >= Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid range");
+    }
+    return (int) (last - first + 1);
+  }
+
+  /**
+   * Looks up the rows of a category code in the category index.
+   *
+   * @return the sorted row positions
+   */
+  int[] rowsWithCategory(int code) {
+    RowIdSet ids = categoryIndex.rows(code);
+    return ids == null ? new int[0] : positionsOf(ids.toArray());
+  }
+
+  int countWithCategory(int code) {
+    return categoryIndex.count(code);
+  }
+
+  /**
+   * Looks up the rows with min <= amount <= max in the amount index.
+   *
+   * @return the sorted row positions
+   */
+  int[] rowsWithAmountBetween(double min, double max) {
+    long[] ids = amountIndex.range(OrderedIndex.key(min), OrderedIndex.key(max));
+    Arrays.sort(ids);
+    return positionsOf(ids);
+  }
+
+  /**
+   * Looks up the n rows with the largest amounts in the amount index. Among equal
+   * amounts the newer rows come first.
+   *
+   * @return the sorted row positions
+   */
+  int[] rowsWithLargestAmounts(int n) {
+    long[] ids = amountIndex.largest(n);
+    Arrays.sort(ids);
+    return positionsOf(ids);
+  }
+
+  int countWithAmountBetween(double min, double max) {
+    return amountIndex.count(OrderedIndex.key(min), OrderedIndex.key(max));
+  }
+
+  /**
+   * Looks up the rows with from <= time <= to in the time index.
+   *
+   * @return the sorted row positions
+   */
+  int[] rowsWithTimeBetween(long from, long to) {
+    long[] ids = timeIndex.range(from, to);
+    Arrays.sort(ids);
+    return positionsOf(ids);
+  }
+
+  int countWithTimeBetween(long from, long to) {
+    return timeIndex.count(from, to);
+  }
+
+  // Resolves sorted row ids to their row positions
+  private int[] positionsOf(long[] ids) {
+    int[] rows = new int[ids.length];
+    int from = 0;
+    for (int i = 0; i < rows.length; i++) {
+      // Ids and positions increase together, so each search starts after the previous row
+      rows[i] = positionOf(ids[i], from);
+      from = rows[i] + 1;
+    }
+    return rows;
+  }
+
+  /**
+   * Creates a Transaction view over the given row.
+   */
+  public Transaction transactionAt(int row) {
+    checkRow(row);
+    int c = row >>> CHUNK_SHIFT;
+    int i = row & CHUNK_MASK;
+    return new Transaction(ids[c][i], amounts[c][i], registry.name(categories[c][i]), times[c][i]);
+  }
+
+  /**
+   * Appends a row at the end of the store.
+   *
+   * @return the id of the new row
+   */
+  public long append(double amount, String category, long time) {
+    if (size == chunkCount << CHUNK_SHIFT) {
+      addChunk();
+    }
+    int c = size >>> CHUNK_SHIFT;
+    int i = size & CHUNK_MASK;
+    own(c, size);
+    long id = nextId++;
+    int code = encode(category);
+    amounts[c][i] = amount;
+    categories[c][i] = code;
+    times[c][i] = time;
+    ids[c][i] = id;
+    index(id, amount, code, time);
+    size++;
+    version++;
+    if (log != null) {
+      log.append(amount, code, time);
+    }
+    return id;
+  }
+
+  /**
+   * Puts a row back at the given position with its original id, e.g. to undo
+   * its removal. The following rows shift one position down.
+   */
+  void insert(int row, long id, double amount, int code, long time) {
+    if (row < 0 || row > size) {
+      throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size);
+    }
+    if ((row > 0 && idAt(row - 1) >= id) || (row < size && idAt(row) <= id)) {
+      // The ids have to stay sorted for positionOf
+      throw new IllegalArgumentException("The row id does not fit at this position.");
+    }
+    if (code < 0 || code >= registry.size()) {
+      throw new IllegalArgumentException("Unknown category code: " + code);
+    }
+    if (size == chunkCount << CHUNK_SHIFT) {
+      addChunk();
+    }
+    for (int c = row >>> CHUNK_SHIFT; c <= size >>> CHUNK_SHIFT; c++) {
+      own(c, Math.max(row, c << CHUNK_SHIFT));
+    }
+    shiftRight(amounts, row, size);
+    shiftRight(categories, row, size);
+    shiftRight(times, row, size);
+    shiftRight(ids, row, size);
+    int c = row >>> CHUNK_SHIFT;
+    int i = row & CHUNK_MASK;
+    amounts[c][i] = amount;
+    categories[c][i] = code;
+    times[c][i] = time;
+    ids[c][i] = id;
+    index(id, amount, code, time);
+    nextId = Math.max(nextId, id + 1);
+    size++;
+    version++;
+    if (log != null) {
+      log.insert(row, id, amount, code, time);
+    }
+  }
+
+  /**
+   * Removes the given row, shifting the following rows one position up.
+   */
+  public void remove(int row) {
+    checkRow(row);
+    unindex(idAt(row), amountAt(row), categoryCodeAt(row), timeAt(row));
+    for (int c = row >>> CHUNK_SHIFT; c << CHUNK_SHIFT < size; c++) {
+      own(c, Math.max(row, c << CHUNK_SHIFT));
+    }
+    shiftLeft(amounts, row, size);
+    shiftLeft(categories, row, size);
+    shiftLeft(times, row, size);
+    shiftLeft(ids, row, size);
+    size--;
+    version++;
+    if (log != null) {
+      log.remove(row);
+    }
+  }
+
+  // Adds a row to the secondary indexes and aggregates
+  private void index(long id, double amount, int code, long time) {
+    categoryIndex.add(code, id);
+    amountIndex.insert(OrderedIndex.key(amount), id);
+    timeIndex.insert(time, id);
+    rollups.add(code, time, amount);
+    aggregates.add(code, amount, id);
+  }
+
+  private void unindex(long id, double amount, int code, long time) {
+    categoryIndex.remove(code, id);
+    amountIndex.remove(OrderedIndex.key(amount), id);
+    timeIndex.remove(time, id);
+    rollups.remove(code, time, amount);
+    aggregates.remove(code, amount, id);
+  }
+
+  /**
+   * Binary search for the row holding the given id.
+   *
+   * @return the row position, or -1 if no row has this id
+   */
+  public int positionOf(long id) {
+    return positionOf(id, 0);
+  }
+
+  private int positionOf(long id, int from) {
+    int low = from;
+    int high = size - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midId = ids[mid >>> CHUNK_SHIFT][mid & CHUNK_MASK];
+      if (midId < id) {
+        low = mid + 1;
+      } else if (midId > id) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns an immutable view of the current rows. The snapshot is cached per
+   * version, so repeated calls without a change in between are O(1); otherwise
+   * only the chunk directory is copied, never the rows.
+   */
+  public TransactionSnapshot snapshot() {
+    if (snapshot == null || snapshot.getVersion() != version) {
+      for (int c = 0; c < chunkCount; c++) {
+        sharedLimit[c] = Math.max(sharedLimit[c], size);
+      }
+      snapshot = new TransactionSnapshot(this, Arrays.copyOf(amounts, chunkCount),
+          Arrays.copyOf(categories, chunkCount), Arrays.copyOf(times, chunkCount),
+          Arrays.copyOf(ids, chunkCount), registry.names(), registry.size(), size, version,
+          aggregates.total());
+    }
+    return snapshot;
+  }
+
+  private int encode(String category) {
+    int known = registry.size();
+    int code = registry.intern(category);
+    if (code == known && log != null) {
+      log.category(registry.name(code));
+    }
+    return code;
+  }
+
+  // Copies chunk c if the given row and the rows after it may be visible to a snapshot.
+  private void own(int c, int firstWrittenRow) {
+    if (firstWrittenRow < sharedLimit[c]) {
+      amounts[c] = amounts[c].clone();
+      categories[c] = categories[c].clone();
+      times[c] = times[c].clone();
+      ids[c] = ids[c].clone();
+      sharedLimit[c] = 0;
+    }
+  }
+
+  private void addChunk() {
+    if (chunkCount == amounts.length) {
+      int capacity = chunkCount * 2;
+      amounts = Arrays.copyOf(amounts, capacity);
+      categories = Arrays.copyOf(categories, capacity);
+      times = Arrays.copyOf(times, capacity);
+      ids = Arrays.copyOf(ids, capacity);
+      sharedLimit = Arrays.copyOf(sharedLimit, capacity);
+    }
+    amounts[chunkCount] = new double[CHUNK_SIZE];
+    categories[chunkCount] = new int[CHUNK_SIZE];
+    times[chunkCount] = new long[CHUNK_SIZE];
+    ids[chunkCount] = new long[CHUNK_SIZE];
+    chunkCount++;
+  }
+
+  private void checkRow(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size);
+    }
+  }
+
+  // Moves the rows after the given row one slot towards the front, chunk by chunk.
+  // The column is passed as Object[] so the same code serves every primitive type.
+  private static void shiftLeft(Object[] column, int row, int size) {
+    int c = row >>> CHUNK_SHIFT;
+    int offset = row & CHUNK_MASK;
+    while (true) {
+      int end = Math.min(CHUNK_SIZE, size - (c << CHUNK_SHIFT));
+      System.arraycopy(column[c], offset + 1, column[c], offset, end - offset - 1);
+      if ((c + 1) << CHUNK_SHIFT >= size) {
+        return;
+      }
+      System.arraycopy(column[c + 1], 0, column[c], CHUNK_SIZE - 1, 1);
+      c++;
+      offset = 0;
+    }
+  }
+
+  // Moves the rows from the given row on one slot towards the end, chunk by chunk,
+  // starting with the last chunk. The slot at index size must already exist.
+  private static void shiftRight(Object[] column, int row, int size) {
+    int first = row >>> CHUNK_SHIFT;
+    for (int c = size >>> CHUNK_SHIFT; c >= first; c--) {
+      int low = c == first ? row & CHUNK_MASK : 0;
+      int high = Math.min(CHUNK_SIZE - 1, size - (c << CHUNK_SHIFT));
+      System.arraycopy(column[c], low, column[c], low + 1, high - low);
+      if (c > first) {
+        System.arraycopy(column[c - 1], CHUNK_SIZE - 1, column[c], 0, 1);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,215 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Validates amounts and categories against configurable rules.
+ *
+ * The allowed categories are compiled into a small open-addressing hash table
+ * of lower-case names when the validator is created. A category is checked by
+ * hashing and comparing its characters with ASCII case folding, so checking
+ * does not allocate, compile a pattern or copy the string. Validators are
+ * immutable and can be shared between threads.
+ *
+ * The table also keeps one interned lower-case String per category, which
+ * canonical returns so that every transaction of a category shares it.
+ */
+public final class TransactionValidator {
+
+  public static final TransactionValidator DEFAULT =
+      new TransactionValidator(0, 1000, "food", "travel", "bills", "entertainment", "other");
+
+  private final double minAmount;
+  private final double maxAmount;
+  private final String[] categories;
+  // Lower-case names by hash slot, null for empty slots
+  private final char[][] table;
+  private final String[] names;
+  private final int mask;
+
+  /**
+   * @param minAmount amounts must be greater than this
+   * @param maxAmount amounts must not be greater than this
+   * @param categories the allowed categories, made of ASCII letters and matched ignoring case
+   */
+  public TransactionValidator(double minAmount, double maxAmount, String... categories) {
+    if (!(minAmount < maxAmount)) {
+      throw new IllegalArgumentException("Invalid amount bounds");
+    }
+    int capacity = Integer.highestOneBit(Math.max(1, categories.length) * 4);
+    char[][] table = new char[capacity][];
+    String[] names = new String[capacity];
+    for (String category : categories) {
+      if (category == null || category.isEmpty()) {
+        throw new IllegalArgumentException("The categories must be non-empty.");
+      }
+      char[] name = new char[category.length()];
+      for (int i = 0; i < name.length; i++) {
+        char c = category.charAt(i);
+        if (!isLetter(c)) {
+          throw new IllegalArgumentException("Invalid category: " + category);
+        }
+        name[i] = lower(c);
+      }
+      int slot = hash(name) & (capacity - 1);
+      while (table[slot] != null && !Arrays.equals(table[slot], name)) {
+        slot = (slot + 1) & (capacity - 1);
+      }
+      table[slot] = name;
+      names[slot] = new String(name).intern();
+    }
+    this.minAmount = minAmount;
+    this.maxAmount = maxAmount;
+    this.categories = categories.clone();
+    this.table = table;
+    this.names = names;
+    this.mask = capacity - 1;
+  }
+
+  public double getMinAmount() {
+    return minAmount;
+  }
+
+  public double getMaxAmount() {
+    return maxAmount;
+  }
+
+  public String[] getCategories() {
+    return categories.clone();
+  }
+
+  /**
+   * @return true if minAmount < amount <= maxAmount; NaN is never valid
+   */
+  public boolean isValidAmount(double amount) {
+    return amount > minAmount && amount <= maxAmount;
+  }
+
+  public boolean isValidCategory(String category) {
+    return slot(category) != -1;
+  }
+
+  /**
+   * @return the shared lower-case name of the category, or null if it is not valid
+   */
+  public String canonical(String category) {
+    int slot = slot(category);
+    return slot == -1 ? null : names[slot];
+  }
+
+  /**
+   * @return a validator with the same rules that also allows the category
+   */
+  public TransactionValidator withCategory(String category) {
+    if (isValidCategory(category)) {
+      return this;
+    }
+    String[] categories = Arrays.copyOf(this.categories, this.categories.length + 1);
+    categories[this.categories.length] = category;
+    return new TransactionValidator(minAmount, maxAmount, categories);
+  }
+
+  /**
+   * Validates the first count rows of the columns in one pass.
+   *
+   * @return the position of the first invalid row, or -1 if all are valid
+   */
+  public int firstInvalid(double[] amounts, String[] categories, int count) {
+    String lastValid = null;
+    for (int i = 0; i < count; i++) {
+      if (!isValidAmount(amounts[i])) {
+        return i;
+      }
+      // Batches usually repeat the same category strings, which only need one check
+      if (categories[i] != lastValid) {
+        if (!isValidCategory(categories[i])) {
+          return i;
+        }
+        lastValid = categories[i];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Validates the first count rows of the columns in one pass and writes the
+   * positions of the invalid ones to invalidRows, which needs room for count
+   * entries.
+   *
+   * @return the number of invalid rows
+   */
+  public int validate(double[] amounts, String[] categories, int count, int[] invalidRows) {
+    int invalid = 0;
+    String lastValid = null;
+    for (int i = 0; i < count; i++) {
+      boolean valid = isValidAmount(amounts[i]);
+      if (valid && categories[i] != lastValid) {
+        valid = isValidCategory(categories[i]);
+        if (valid) {
+          lastValid = categories[i];
+        }
+      }
+      if (!valid) {
+        invalidRows[invalid++] = i;
+      }
+    }
+    return invalid;
+  }
+
+  // The table slot of the category, or -1 if it is not allowed
+  private int slot(String category) {
+    if (category == null) {
+      return -1;
+    }
+    int length = category.length();
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      char c = category.charAt(i);
+      if (!isLetter(c)) {
+        return -1;
+      }
+      hash = 31 * hash + lower(c);
+    }
+    for (int slot = mix(hash) & mask; table[slot] != null; slot = (slot + 1) & mask) {
+      if (matches(table[slot], category)) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean matches(char[] name, String category) {
+    if (name.length != category.length()) {
+      return false;
+    }
+    for (int i = 0; i < name.length; i++) {
+      if (lower(category.charAt(i)) != name[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int hash(char[] name) {
+    int hash = 0;
+    for (char c : name) {
+      hash = 31 * hash + c;
+    }
+    return mix(hash);
+  }
+
+  // Spreads the bits of the string hash over the table slots
+  private static int mix(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private static boolean isLetter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  // Lower-cases an ASCII letter
+  private static char lower(char c) {
+    return (char) (c | 0x20);
+  }
+
+}
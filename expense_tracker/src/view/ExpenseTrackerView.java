@@ -1,11 +1,10 @@
 package view;
 
 import java.awt.BorderLayout;
-import java.awt.Color;
-import java.awt.Component;
 import java.awt.event.ActionListener;
 import java.text.NumberFormat;
 import java.util.List;
+import java.util.function.IntPredicate;
 
 import javax.swing.JButton;
 import javax.swing.JFormattedTextField;
@@ -16,18 +15,19 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.JTextField;
-import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 
 import model.Transaction;
 
-public class ExpenseTrackerView extends JFrame {
+public class ExpenseTrackerView extends JFrame implements TransactionView {
+
+  private static final long serialVersionUID = 1L;
 
   private JTable transactionsTable;
   private JButton addTransactionBtn;
   private JFormattedTextField amountField;
   private JTextField categoryField;
-  private DefaultTableModel model;
+  private TransactionTableModel model;
+  private HighlightRenderer highlightRenderer;
 
   // private JTextField dateFilterField;
   private JTextField categoryFilterField;
@@ -37,6 +37,7 @@ public class ExpenseTrackerView extends JFrame {
   private JButton amountFilterBtn;
 
   private JButton undoBtn;
+  private JButton redoBtn;
   private JButton removeTransaction;
 
   
@@ -45,12 +46,14 @@ public class ExpenseTrackerView extends JFrame {
     setTitle("Expense Tracker"); // Set title
     setSize(600, 400); // Make GUI larger
 
-    String[] columnNames = {"serial", "Amount", "Category", "Date"};
-    this.model = new DefaultTableModel(columnNames, 0);
+    this.model = new TransactionTableModel();
 
     
     // Create table
     transactionsTable = new JTable(model);
+    // Installed once; highlightRows only updates its rows
+    highlightRenderer = new HighlightRenderer();
+    transactionsTable.setDefaultRenderer(Object.class, highlightRenderer);
 
     addTransactionBtn = new JButton("Add Transaction");
 
@@ -76,6 +79,7 @@ public class ExpenseTrackerView extends JFrame {
   
     // Undo Button functionality
     undoBtn = new JButton("Undo recent");
+    redoBtn = new JButton("Redo");
     removeTransaction = new JButton("Undo Selected Txns");
   
     // Layout components
@@ -90,6 +94,7 @@ public class ExpenseTrackerView extends JFrame {
     buttonPanel.add(amountFilterBtn);
     buttonPanel.add(categoryFilterBtn);
     buttonPanel.add(undoBtn);
+    buttonPanel.add(redoBtn);
     buttonPanel.add(removeTransaction);
 
     // Add panels to frame
@@ -105,7 +110,7 @@ public class ExpenseTrackerView extends JFrame {
   
   }
 
-  public DefaultTableModel getTableModel() {
+  public TransactionTableModel getTableModel() {
     return model;
   }
     
@@ -159,29 +164,22 @@ public class ExpenseTrackerView extends JFrame {
     }
   }
 
+  @Override
   public void refreshTable(List<Transaction> transactions) {
-      // Clear existing rows
-      model.setRowCount(0);
-      // Get row count
-      int rowNum = model.getRowCount();
-      double totalCost=0;
-      // Calculate total cost
-      for(Transaction t : transactions) {
-        totalCost+=t.getAmount();
-      }
-  
-      // Add rows from transactions list
-      for(Transaction t : transactions) {
-        model.addRow(new Object[]{rowNum+=1,t.getAmount(), t.getCategory(), t.getTimestamp()}); 
-      }
-      // Add total row
-      Object[] totalRow = {"Total", null, null, totalCost};
-      model.addRow(totalRow);
-  
-      // Fire table update
-      transactionsTable.updateUI();
-  
+      // The table model reads the rows from the list, including the total row
+      model.setTransactions(transactions);
     }  
+
+  // Incremental updates: only the changed rows are announced to the table
+  @Override
+  public void rowsInserted(List<Transaction> transactions, int firstRow, int lastRow) {
+      model.rowsInserted(transactions, firstRow, lastRow);
+  }
+
+  @Override
+  public void rowsRemoved(List<Transaction> transactions, int firstRow, int lastRow) {
+      model.rowsRemoved(transactions, firstRow, lastRow);
+  }
   
 
   public JButton getAddTransactionBtn() {
@@ -192,33 +190,53 @@ public class ExpenseTrackerView extends JFrame {
     return undoBtn;
   }
 
+  public JButton getRedoBtn() {
+    return redoBtn;
+  }
+
   public JButton getRemoveTransactionBtn() {
     return removeTransaction;
   }
 
+  @Override
   public int[] getSelectedRows() {
     return transactionsTable.getSelectedRows();
   }
 
+  @Override
+  public boolean confirmRemoval(Transaction transaction) {
+    String d = "" + "\n" + transaction.getAmount() + "\n" + transaction.getCategory() + "\n" + transaction.getTimestamp(); 
+    int option = JOptionPane.showConfirmDialog(this,
+            "Do you want to remove the selected transaction?" + d, "Confirm Removal",
+            JOptionPane.YES_NO_OPTION);
+    return option == JOptionPane.YES_OPTION;
+  }
+
+  @Override
+  public void showMessage(String message) {
+    JOptionPane.showMessageDialog(this, message);
+    toFront();
+  }
+
 
   public void highlightRows(List<Integer> rowIndexes) {
+      int[] rows = new int[rowIndexes.size()];
+      for (int i = 0; i < rows.length; i++) {
+        rows[i] = rowIndexes.get(i);
+      }
+      highlightRows(rows);
+  }
+
+  @Override
+  public void highlightRows(int[] rowIndexes) {
       // The row indices are being used as hashcodes for the transactions.
       // The row index directly maps to the the transaction index in the list.
-      transactionsTable.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
-          @Override
-          public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
-                                                        boolean hasFocus, int row, int column) {
-              Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-              if (rowIndexes.contains(row)) {
-                  c.setBackground(new Color(173, 255, 168)); // Light green
-              } else {
-                  c.setBackground(table.getBackground());
-              }
-              return c;
-          }
-      });
-
-      transactionsTable.repaint();
+      highlightRenderer.setHighlightedRows(transactionsTable, rowIndexes);
+  }
+
+  @Override
+  public void highlightRows(IntPredicate rows) {
+      highlightRenderer.setHighlightedRows(transactionsTable, rows);
   }
 
 }
@@ -0,0 +1,128 @@
+package view;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+import model.Transaction;
+
+/**
+ * A view without a display. It keeps what a window would show: the current
+ * transactions, the highlight and the last message, and lets the
+ * caller set the selection. Removals are confirmed by a policy instead of a
+ * dialog, so no call ever blocks.
+ *
+ * Updates are O(1) and can come from any thread; the fields are volatile so
+ * the latest state is visible to the thread that reads it.
+ */
+public class HeadlessView implements TransactionView {
+
+  private final Predicate<Transaction> removalPolicy;
+  private volatile List<Transaction> transactions = Collections.emptyList();
+  private volatile int[] selectedRows = new int[0];
+  private volatile IntPredicate highlighted = row -> false;
+  private volatile String lastMessage;
+
+  /**
+   * Creates a view that confirms every removal.
+   */
+  public HeadlessView() {
+    this(transaction -> true);
+  }
+
+  /**
+   * @param removalPolicy decides which selected transactions are removed
+   */
+  public HeadlessView(Predicate<Transaction> removalPolicy) {
+    if (removalPolicy == null) {
+      throw new IllegalArgumentException("The removal policy must be non-null.");
+    }
+    this.removalPolicy = removalPolicy;
+  }
+
+  @Override
+  public void refreshTable(List<Transaction> transactions) {
+    this.transactions = transactions;
+  }
+
+  @Override
+  public void rowsInserted(List<Transaction> transactions, int firstRow, int lastRow) {
+    this.transactions = transactions;
+  }
+
+  @Override
+  public void rowsRemoved(List<Transaction> transactions, int firstRow, int lastRow) {
+    this.transactions = transactions;
+  }
+
+  @Override
+  public void highlightRows(int[] rowIndexes) {
+    BitSet rows = new BitSet();
+    for (int row : rowIndexes) {
+      rows.set(row);
+    }
+    highlighted = rows::get;
+  }
+
+  @Override
+  public void highlightRows(IntPredicate rows) {
+    highlighted = rows;
+  }
+
+  public boolean isHighlighted(int row) {
+    return highlighted.test(row);
+  }
+
+  @Override
+  public int[] getSelectedRows() {
+    return selectedRows;
+  }
+
+  public void setSelectedRows(int[] selectedRows) {
+    this.selectedRows = selectedRows.clone();
+  }
+
+  @Override
+  public boolean confirmRemoval(Transaction transaction) {
+    return removalPolicy.test(transaction);
+  }
+
+  @Override
+  public void showMessage(String message) {
+    lastMessage = message;
+  }
+
+  /**
+   * @return the transactions as last shown
+   */
+  public List<Transaction> getTransactions() {
+    return transactions;
+  }
+
+  /**
+   * @return the highlighted positions of the transactions as last shown; O(n)
+   */
+  public int[] getHighlightedRows() {
+    IntPredicate highlighted = this.highlighted;
+    int size = transactions.size();
+    int[] rows = new int[size];
+    int found = 0;
+    for (int row = 0; row < size; row++) {
+      if (highlighted.test(row)) {
+        rows[found++] = row;
+      }
+    }
+    return Arrays.copyOf(rows, found);
+  }
+
+  /**
+   * @return the last message shown, or null if there was none
+   */
+  public String getLastMessage() {
+    return lastMessage;
+  }
+
+}
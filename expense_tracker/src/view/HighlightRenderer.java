@@ -0,0 +1,91 @@
+package view;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableCellRenderer;
+
+/**
+ * Cell renderer that paints the highlighted rows of a table light green.
+ *
+ * One renderer is installed for the lifetime of the table. Whether a row is
+ * highlighted is an O(1) lookup, in a BitSet of fixed rows or in a live
+ * filter's rows, and painting a cell allocates nothing. When the highlight
+ * is replaced, only the visible rows whose highlight changed are repainted.
+ */
+public class HighlightRenderer extends DefaultTableCellRenderer {
+
+  private static final long serialVersionUID = 1L;
+
+  public static final Color HIGHLIGHT = new Color(173, 255, 168); // Light green
+
+  private static final IntPredicate NONE = row -> false;
+
+  private IntPredicate highlighted = NONE;
+
+  @Override
+  public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                 boolean hasFocus, int row, int column) {
+    Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+    // Selected rows keep the selection colour
+    if (!isSelected) {
+      c.setBackground(highlighted.test(row) ? HIGHLIGHT : table.getBackground());
+    }
+    return c;
+  }
+
+  public boolean isHighlighted(int row) {
+    return highlighted.test(row);
+  }
+
+  /**
+   * Highlights the given rows instead of the current ones and repaints the
+   * visible rows whose highlight changed.
+   */
+  public void setHighlightedRows(JTable table, int[] rows) {
+    BitSet next = new BitSet();
+    for (int row : rows) {
+      next.set(row);
+    }
+    setHighlightedRows(table, next::get);
+  }
+
+  /**
+   * Highlights the rows the predicate accepts, e.g. those of a live filter,
+   * which keeps the highlight up to date as rows are added and removed. The
+   * predicate is tested for every painted cell, so it has to be O(1).
+   */
+  public void setHighlightedRows(JTable table, IntPredicate rows) {
+    IntPredicate previous = highlighted;
+    highlighted = rows;
+    repaintChangedRows(table, previous, rows);
+  }
+
+  private static void repaintChangedRows(JTable table, IntPredicate before, IntPredicate after) {
+    // Rows outside the viewport are painted with the new highlight when they scroll in
+    Rectangle visible = table.getVisibleRect();
+    if (visible.isEmpty() || table.getRowCount() == 0 || table.getColumnCount() == 0) {
+      return;
+    }
+    int first = table.rowAtPoint(visible.getLocation());
+    int last = table.rowAtPoint(new Point(visible.x, visible.y + visible.height - 1));
+    if (first == -1) {
+      first = 0;
+    }
+    if (last == -1) {
+      last = table.getRowCount() - 1;
+    }
+    int lastColumn = table.getColumnCount() - 1;
+    for (int row = first; row <= last; row++) {
+      if (before.test(row) != after.test(row)) {
+        table.repaint(table.getCellRect(row, 0, true).union(table.getCellRect(row, lastColumn, true)));
+      }
+    }
+  }
+
+}
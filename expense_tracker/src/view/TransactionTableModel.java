@@ -0,0 +1,130 @@
+package view;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.table.AbstractTableModel;
+
+import model.Transaction;
+import model.TransactionSnapshot;
+
+/**
+ * Table model that reads the cells straight from the model's transactions,
+ * followed by a total row. No per-row objects are kept by the table, and the
+ * total comes from the model's running total instead of a sum over the rows.
+ *
+ * Changes are reported as row insertions and deletions, so adding one
+ * transaction costs O(1) table work instead of rebuilding every row.
+ */
+public class TransactionTableModel extends AbstractTableModel {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final String[] COLUMN_NAMES = {"serial", "Amount", "Category", "Date"};
+
+  private List<Transaction> transactions = Collections.emptyList();
+  private double totalCost;
+
+  /**
+   * Replaces all rows, e.g. when the whole table is refreshed.
+   */
+  public void setTransactions(List<Transaction> transactions) {
+    this.transactions = transactions;
+    if (transactions instanceof TransactionSnapshot) {
+      totalCost = ((TransactionSnapshot) transactions).getTotalAmount();
+    } else {
+      totalCost = 0;
+      for (int row = 0; row < transactions.size(); row++) {
+        totalCost += amountAt(row);
+      }
+    }
+    fireTableDataChanged();
+  }
+
+  /**
+   * Shows the given transactions, which differ from the current ones by the
+   * rows inserted at firstRow..lastRow.
+   */
+  public void rowsInserted(List<Transaction> transactions, int firstRow, int lastRow) {
+    this.transactions = transactions;
+    if (transactions instanceof TransactionSnapshot) {
+      totalCost = ((TransactionSnapshot) transactions).getTotalAmount();
+    } else {
+      for (int row = firstRow; row <= lastRow; row++) {
+        totalCost += amountAt(row);
+      }
+    }
+    fireTableRowsInserted(firstRow, lastRow);
+    // The serial numbers after the inserted rows and the total have changed
+    fireTableRowsUpdated(lastRow + 1, transactions.size());
+  }
+
+  /**
+   * Shows the given transactions, which differ from the current ones by the
+   * rows removed from firstRow..lastRow.
+   */
+  public void rowsRemoved(List<Transaction> transactions, int firstRow, int lastRow) {
+    if (transactions instanceof TransactionSnapshot) {
+      totalCost = ((TransactionSnapshot) transactions).getTotalAmount();
+    } else {
+      // The current list still holds the removed rows
+      for (int row = firstRow; row <= lastRow; row++) {
+        totalCost -= amountAt(row);
+      }
+    }
+    this.transactions = transactions;
+    fireTableRowsDeleted(firstRow, lastRow);
+    fireTableRowsUpdated(firstRow, transactions.size());
+  }
+
+  public double getTotalCost() {
+    return totalCost;
+  }
+
+  @Override
+  public int getRowCount() {
+    // One row per transaction plus the total row
+    return transactions.size() + 1;
+  }
+
+  @Override
+  public int getColumnCount() {
+    return COLUMN_NAMES.length;
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return COLUMN_NAMES[column];
+  }
+
+  @Override
+  public Object getValueAt(int row, int column) {
+    if (row == transactions.size()) {
+      return column == 0 ? "Total" : column == 3 ? totalCost : null;
+    }
+    switch (column) {
+      case 0:
+        return row + 1;
+      case 1:
+        return amountAt(row);
+      case 2:
+        if (transactions instanceof TransactionSnapshot) {
+          return ((TransactionSnapshot) transactions).categoryAt(row);
+        }
+        return transactions.get(row).getCategory();
+      default:
+        if (transactions instanceof TransactionSnapshot) {
+          return Transaction.formatTime(((TransactionSnapshot) transactions).timeAt(row));
+        }
+        return transactions.get(row).getTimestamp();
+    }
+  }
+
+  private double amountAt(int row) {
+    if (transactions instanceof TransactionSnapshot) {
+      return ((TransactionSnapshot) transactions).amountAt(row);
+    }
+    return transactions.get(row).getAmount();
+  }
+
+}
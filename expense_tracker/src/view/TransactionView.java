@@ -0,0 +1,56 @@
+package view;
+
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import model.Transaction;
+
+/**
+ * What the controller needs from a view: showing the transactions,
+ * highlighting rows, the current selection and talking to the user.
+ *
+ * ExpenseTrackerView implements it with Swing; HeadlessView implements it
+ * without a display, for batch jobs, services and load tests.
+ */
+public interface TransactionView {
+
+  /**
+   * Shows all given transactions, replacing the current rows.
+   */
+  void refreshTable(List<Transaction> transactions);
+
+  /**
+   * Shows the given transactions, which differ from the current ones by the
+   * rows inserted at firstRow..lastRow.
+   */
+  void rowsInserted(List<Transaction> transactions, int firstRow, int lastRow);
+
+  /**
+   * Shows the given transactions, which differ from the current ones by the
+   * rows removed from firstRow..lastRow.
+   */
+  void rowsRemoved(List<Transaction> transactions, int firstRow, int lastRow);
+
+  void highlightRows(int[] rowIndexes);
+
+  /**
+   * Highlights the rows the predicate accepts, e.g. those of a live filter,
+   * until the highlight is replaced. The predicate must be O(1) per row.
+   */
+  void highlightRows(IntPredicate rows);
+
+  /**
+   * @return the positions of the selected rows, which may include the total row
+   */
+  int[] getSelectedRows();
+
+  /**
+   * Asks whether the transaction should be removed.
+   *
+   * @return true if it should be removed
+   */
+  boolean confirmRemoval(Transaction transaction);
+
+  void showMessage(String message);
+
+}
@@ -13,7 +13,7 @@ import java.util.List;
 
 import javax.swing.JTable;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableModel;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -170,7 +170,7 @@ public class TestExample {
     public List<Transaction> getHighlightedTransactions() {
         List<Transaction> highlightedTransactions = new ArrayList<>();
         JTable transactionsTable = view.getTransactionsTable();
-        DefaultTableModel tableModel = (DefaultTableModel) transactionsTable.getModel();
+        TableModel tableModel = transactionsTable.getModel();
         DefaultTableCellRenderer cellRenderer = (DefaultTableCellRenderer) transactionsTable.getDefaultRenderer(Object.class);
 
         for (int row = 0; row < transactionsTable.getRowCount(); row++) {
@@ -283,7 +283,7 @@ public class TestExample {
     private List<Transaction> getDisplayedTransactions() {
         List<Transaction> transactionsInView = new ArrayList<>();
         JTable transactionsTable = view.getTransactionsTable();
-        DefaultTableModel tableModel = (DefaultTableModel) transactionsTable.getModel();
+        TableModel tableModel = transactionsTable.getModel();
 
         for (int row = 0; row < transactionsTable.getRowCount()-1; row++) {
             double amount = (double) tableModel.getValueAt(row, 1);
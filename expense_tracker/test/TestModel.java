@@ -0,0 +1,1383 @@
+// package test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Component;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.swing.JTable;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import controller.CsvExporter;
+import controller.CsvImporter;
+import controller.ExpenseTrackerController;
+import controller.FilterCache;
+import controller.ImportResult;
+import controller.InputValidation;
+import controller.JmxMetrics;
+import controller.LiveFilter;
+import controller.TransactionFeed;
+import metrics.LatencyRecorder;
+import metrics.Metrics;
+import model.CategorySummary;
+import model.ExpenseTrackerModel;
+import model.Transaction;
+import model.TransactionListener;
+import model.TransactionSnapshot;
+import model.TransactionStore;
+import model.TransactionValidator;
+import model.Filter.AmountFilter;
+import model.Filter.AmountRangeFilter;
+import model.Filter.AndFilter;
+import model.Filter.CategoryFilter;
+import model.Filter.DateRangeFilter;
+import model.Filter.FilterEngine;
+import model.Filter.TopAmountFilter;
+import model.Filter.TransactionFilter;
+import view.HeadlessView;
+import view.HighlightRenderer;
+import view.TransactionTableModel;
+
+
+/**
+ * Model level tests. Unlike TestExample these do not create the Swing view,
+ * so they also run on machines without a display.
+ */
+public class TestModel {
+
+    private ExpenseTrackerModel model;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setup() {
+        model = new ExpenseTrackerModel();
+    }
+
+    @Test
+    public void testStoreSpansChunks() {
+        // Add enough rows to fill several chunks of the columnar store
+        TransactionStore store = new TransactionStore();
+        String[] categories = {"food", "travel", "bills"};
+        int rows = 10000;
+        for (int i = 0; i < rows; i++) {
+            store.append(1 + i % 100, categories[i % 3], i);
+        }
+        assertEquals(rows, store.size());
+        assertEquals(3, store.categoryCount());
+
+        // Remove a row from the first chunk; the following rows shift up
+        store.remove(10);
+        assertEquals(rows - 1, store.size());
+        assertEquals(11, store.timeAt(10));
+        assertEquals(rows - 1, store.timeAt(rows - 2));
+        assertEquals(-1, store.positionOf(10));
+        assertEquals(rows - 2, store.positionOf(rows - 1));
+        assertEquals("bills", store.categoryAt(10));
+    }
+
+    @Test
+    public void testRemoveViewOfStoredRow() {
+        // Pre-condition: the model holds two transactions
+        Transaction food = new Transaction(10.0, "food");
+        Transaction bills = new Transaction(20.0, "bills");
+        model.addTransaction(food);
+        model.addTransaction(bills);
+
+        // Views over the same row are equal to the stored transaction
+        List<Transaction> transactions = model.getTransactions();
+        assertEquals(food, transactions.get(0));
+        assertEquals(1, transactions.indexOf(bills));
+
+        // Perform the action: remove the transaction through its view
+        model.removeTransaction(transactions.get(0));
+
+        // Post-condition: only the second transaction is left, the old list is unchanged
+        assertEquals(1, model.getTransactions().size());
+        assertEquals(20.0, model.getTransactions().get(0).getAmount(), 0.01);
+        assertEquals(2, transactions.size());
+        assertTrue(transactions.contains(food));
+    }
+
+    @Test
+    public void testSnapshotIsNotAffectedByLaterChanges() {
+        // Pre-condition: a snapshot of a store spanning two chunks
+        TransactionStore store = new TransactionStore();
+        for (int i = 0; i < 5000; i++) {
+            store.append(1 + i % 100, "food", i);
+        }
+        TransactionSnapshot snapshot = store.snapshot();
+        assertTrue(snapshot == store.snapshot());
+
+        // Perform the action: remove the last row and append a new one in its place,
+        // then remove a row from the first chunk
+        store.remove(4999);
+        store.append(999, "bills", -1);
+        store.remove(0);
+
+        // Post-condition: the snapshot still shows the original rows
+        assertEquals(5000, snapshot.size());
+        assertEquals(100, snapshot.amountAt(4999), 0.01);
+        assertEquals("food", snapshot.categoryAt(4999));
+        assertEquals(0, snapshot.timeAt(0));
+        assertEquals(4999, store.size());
+        assertEquals(999, store.amountAt(4998), 0.01);
+        assertTrue(snapshot.getVersion() < store.snapshot().getVersion());
+    }
+
+    @Test
+    public void testCategoryIndex() {
+        // Pre-condition: transactions in two categories
+        model.addTransaction(new Transaction(10.0, "food"));
+        Transaction bills = new Transaction(20.0, "bills");
+        model.addTransaction(bills);
+        model.addTransaction(new Transaction(30.0, "Food"));
+        assertEquals(2, model.getCategoryCount("food"));
+        assertEquals(1, model.getCategoryCount("BILLS"));
+        assertEquals(0, model.getCategoryCount("travel"));
+
+        // The filter finds the rows through the index, ignoring case
+        List<Transaction> food = new CategoryFilter("food").filter(model.getTransactions());
+        assertEquals(2, food.size());
+        assertEquals(10.0, food.get(0).getAmount(), 0.01);
+        assertEquals(30.0, food.get(1).getAmount(), 0.01);
+
+        // Removing and undoing keep the index up to date
+        model.removeTransaction(bills);
+        assertEquals(0, model.getCategoryCount("bills"));
+        model.undo();
+        model.undo();
+        assertEquals(1, model.getCategoryCount("food"));
+        assertEquals(1, new CategoryFilter("food").filter(model.getTransactions()).size());
+    }
+
+    @Test
+    public void testAmountIndexMatchesScan() {
+        // Pre-condition: enough random amounts to split the index blocks,
+        // with some transactions removed again
+        Random random = new Random(42);
+        List<Transaction> added = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            Transaction t = new Transaction(1 + random.nextInt(200) / 4.0, "food");
+            model.addTransaction(t);
+            added.add(t);
+        }
+        for (int i = 0; i < 1000; i++) {
+            model.removeTransaction(added.get(random.nextInt(added.size())));
+        }
+
+        // The index based filters agree with a scan over a plain list
+        List<Transaction> snapshot = model.getTransactions();
+        List<Transaction> plain = new ArrayList<>(snapshot);
+        TransactionFilter[] filters = {
+            new AmountFilter(10.25),
+            AmountRangeFilter.between(5, 7.5),
+            AmountRangeFilter.greaterThan(40),
+            AmountRangeFilter.lessThan(2),
+            new TopAmountFilter(25)
+        };
+        for (TransactionFilter filter : filters) {
+            List<Transaction> indexed = filter.filter(snapshot);
+            assertEquals(filter.filter(plain), indexed);
+            assertTrue(indexed.size() > 0);
+        }
+        assertEquals(25, new TopAmountFilter(25).filter(snapshot).size());
+    }
+
+    @Test
+    public void testComposedFilters() {
+        // Pre-condition: transactions in several categories and amounts
+        String[] categories = {"food", "travel", "bills", "other"};
+        for (int i = 0; i < 2000; i++) {
+            model.addTransaction(new Transaction(1 + i % 50, categories[i % 4]));
+        }
+        List<Transaction> snapshot = model.getTransactions();
+        List<Transaction> plain = new ArrayList<>(snapshot);
+
+        // Perform the action: compose filters with and, or and negate
+        TransactionFilter food = new CategoryFilter("food");
+        TransactionFilter cheap = AmountRangeFilter.lessThan(10);
+        TransactionFilter[] filters = {
+            food.and(cheap),
+            food.or(new CategoryFilter("bills")),
+            food.and(cheap.negate()),
+            food.negate().or(new AmountFilter(25))
+        };
+
+        // Post-condition: the planned evaluation agrees with a row by row check
+        for (TransactionFilter filter : filters) {
+            List<Transaction> expected = new ArrayList<>();
+            for (Transaction t : plain) {
+                if (filter.filter(List.of(t)).size() == 1) {
+                    expected.add(t);
+                }
+            }
+            assertEquals(expected, filter.filter(snapshot));
+            assertEquals(expected, filter.filter(plain));
+        }
+        TransactionFilter largeFood = new AndFilter(food, new TopAmountFilter(1000));
+        assertEquals(largeFood.filter(plain), largeFood.filter(snapshot));
+        assertTrue(largeFood.filter(snapshot).size() > 0);
+        assertEquals(500, food.and(food).filter(snapshot).size());
+        assertEquals(1000, food.or(new CategoryFilter("bills")).estimate(snapshot));
+    }
+
+    @Test
+    public void testFilterRows() {
+        // Pre-condition: four transactions, two of them food
+        model.addTransaction(new Transaction(10.0, "food"));
+        model.addTransaction(new Transaction(20.0, "bills"));
+        model.addTransaction(new Transaction(30.0, "food"));
+        model.addTransaction(new Transaction(20.0, "travel"));
+
+        // The filters return the row positions directly
+        List<Transaction> transactions = model.getTransactions();
+        assertArrayEquals(new int[]{0, 2}, new CategoryFilter("food").filterRows(transactions));
+        assertArrayEquals(new int[]{1, 3}, new AmountFilter(20.0).filterRows(transactions));
+        assertArrayEquals(new int[]{1, 3}, new AmountFilter(20.0).filterRows(new ArrayList<>(transactions)));
+        assertArrayEquals(new int[0], new CategoryFilter("other").filterRows(transactions));
+
+        // A filter that only implements filter still works with the row based calls
+        TransactionFilter large = new TransactionFilter() {
+            @Override
+            public List<Transaction> filter(List<Transaction> list) {
+                List<Transaction> result = new ArrayList<>();
+                for (Transaction transaction : list) {
+                    if (transaction.getAmount() > 15.0) {
+                        result.add(transaction);
+                    }
+                }
+                return result;
+            }
+        };
+        assertArrayEquals(new int[]{1, 2, 3}, large.filterRows(transactions));
+        assertArrayEquals(new int[]{1, 2, 3}, large.filterRows(new ArrayList<>(transactions)));
+        assertArrayEquals(new int[]{2}, large.and(new CategoryFilter("food")).filterRows(transactions));
+        assertArrayEquals(new int[]{0}, large.negate().filterRows(transactions));
+    }
+
+    @Test
+    public void testRunningAggregates() {
+        // Pre-condition: transactions in two categories
+        Transaction lunch = new Transaction(12.5, "food");
+        model.addTransaction(lunch);
+        model.addTransaction(new Transaction(7.25, "food"));
+        Transaction rent = new Transaction(900.0, "bills");
+        model.addTransaction(rent);
+        model.addTransaction(new Transaction(30.0, "Food"));
+        assertEquals(949.75, model.getTotalAmount(), 1e-9);
+
+        CategorySummary food = model.getCategorySummary("FOOD");
+        assertEquals(3, food.getCount());
+        assertEquals(49.75, food.getTotal(), 1e-9);
+        assertEquals(7.25, food.getMin(), 0);
+        assertEquals(30.0, food.getMax(), 0);
+
+        // Perform the action: remove and undo
+        model.removeTransaction(rent);
+        model.removeTransaction(lunch);
+        assertEquals(0, model.getCategorySummary("bills").getCount());
+        assertTrue(Double.isNaN(model.getCategorySummary("bills").getMax()));
+        assertEquals(1, model.getCategorySummaries().size());
+        assertEquals(37.25, model.getTotalAmount(), 1e-9);
+        assertEquals(37.25, model.getSnapshot().getTotalAmount(), 1e-9);
+    }
+
+    @Test
+    public void testTotalDoesNotDrift() {
+        // Adding and removing many small amounts leaves the total exact
+        List<Transaction> added = new ArrayList<>();
+        model.addTransaction(new Transaction(0.3, "food"));
+        for (int i = 0; i < 100000; i++) {
+            Transaction t = new Transaction(0.1, "other");
+            model.addTransaction(t);
+            added.add(t);
+        }
+        for (int i = added.size() - 1; i >= 0; i--) {
+            model.removeTransaction(added.get(i));
+        }
+        assertEquals(0.3, model.getTotalAmount(), 1e-15);
+    }
+
+    @Test
+    public void testUndoRedoRemoval() {
+        // Pre-condition: three transactions
+        Transaction food = new Transaction(10.0, "food");
+        Transaction bills = new Transaction(20.0, "bills");
+        Transaction travel = new Transaction(30.0, "travel");
+        model.addTransaction(food);
+        model.addTransaction(bills);
+        model.addTransaction(travel);
+
+        // Perform the action: remove the middle transaction and undo it
+        model.removeTransaction(bills);
+        assertEquals(2, model.getTransactions().size());
+        model.undo();
+
+        // Post-condition: the transaction is back at its position
+        assertEquals(3, model.getTransactions().size());
+        assertEquals(bills, model.getTransactions().get(1));
+        assertEquals(60.0, model.getTotalAmount(), 0.01);
+
+        // Undo the last add, then redo both changes
+        model.undo();
+        assertEquals(2, model.getTransactions().size());
+        model.redo();
+        model.redo();
+        assertEquals(2, model.getTransactions().size());
+        assertEquals(travel, model.getTransactions().get(1));
+        assertTrue(model.isRedoStackEmpty());
+
+        // A new change discards what could be redone
+        model.undo();
+        model.addTransaction(new Transaction(40.0, "other"));
+        assertTrue(model.isRedoStackEmpty());
+        assertEquals(4, model.getTransactions().size());
+    }
+
+    @Test
+    public void testUndoDepthIsBounded() {
+        // Pre-condition: a model that remembers two changes
+        model = new ExpenseTrackerModel(2);
+        for (int i = 1; i <= 5; i++) {
+            model.addTransaction(new Transaction(i, "food"));
+        }
+        assertEquals(2, model.getUndoDepth());
+
+        // Only the two most recent adds can be undone
+        model.undo();
+        model.undo();
+        model.undo();
+        assertTrue(model.isUndoStackEmpty());
+        assertEquals(3, model.getTransactions().size());
+        assertEquals(6.0, model.getTotalAmount(), 0.01);
+    }
+
+    @Test
+    public void testUndoRemovalAcrossChunks() {
+        // Removing and restoring rows near chunk boundaries keeps the rows in order
+        for (int i = 0; i < 10000; i++) {
+            model.addTransaction(new Transaction(1 + i % 500, "food"));
+        }
+        List<Transaction> before = model.getTransactions();
+        int[] rows = {4095, 4096, 0, 8191, 9990};
+        for (int row : rows) {
+            model.removeTransaction(model.getTransactions().get(row));
+        }
+        for (int i = 0; i < rows.length; i++) {
+            model.undo();
+        }
+        assertEquals(before, model.getTransactions());
+        assertEquals(new AmountFilter(96).filter(new ArrayList<>(before)), new AmountFilter(96).filter(model.getTransactions()));
+    }
+
+    @Test
+    public void testConcurrentFeed() throws InterruptedException {
+        // Drains are queued instead of being run on the event dispatch thread
+        ConcurrentLinkedQueue<Runnable> drains = new ConcurrentLinkedQueue<>();
+        TransactionFeed feed = new TransactionFeed(model, drains::add, 4);
+        int[] notifications = new int[1];
+        model.addTransactionListener(new TransactionListener() {
+            @Override
+            public void transactionsInserted(int firstRow, int lastRow) {
+                notifications[0]++;
+            }
+
+            @Override
+            public void transactionsRemoved(int firstRow, int lastRow) {
+            }
+        });
+
+        // Several producers submit concurrently; each numbers its rows through the time
+        int producers = 4;
+        int rows = 20000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            String category = p % 2 == 0 ? "food" : "travel";
+            long base = (long) p * rows;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < rows; i++) {
+                    feed.submit(1 + i % 100, category, base + i);
+                }
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(drains.size() < producers * rows);
+        for (Runnable drain : drains) {
+            drain.run();
+        }
+        assertEquals(0, feed.pending());
+
+        // All rows arrived, in a few batched notifications
+        assertEquals(producers * rows, model.getTransactions().size());
+        assertTrue(notifications[0] <= drains.size());
+        assertEquals(producers * rows / 2, model.getCategoryCount("food"));
+
+        // The rows of each producer kept their order
+        TransactionSnapshot snapshot = model.getSnapshot();
+        long[] last = new long[producers];
+        Arrays.fill(last, -1);
+        for (int row = 0; row < snapshot.size(); row++) {
+            long time = snapshot.timeAt(row);
+            int p = (int) (time / rows);
+            assertTrue(time > last[p]);
+            last[p] = time;
+        }
+        assertTrue(model.isUndoStackEmpty());
+    }
+
+    @Test
+    public void testLogReplay() throws IOException {
+        File file = new File(folder.getRoot(), "expenses.log");
+        ExpenseTrackerModel persistent = new ExpenseTrackerModel(file.toPath());
+        persistent.addTransaction(new Transaction(10.0, "food"));
+        persistent.addTransaction(new Transaction(20.0, "bills"));
+        persistent.addTransaction(new Transaction(30.0, "food"));
+        persistent.removeTransaction(persistent.getTransactions().get(1));
+        persistent.undo();
+        persistent.removeTransaction(persistent.getTransactions().get(0));
+        persistent.addTransactions(new double[] {5.0, 6.0}, new String[] {"travel", "other"}, new long[] {1, 2}, 2);
+        List<Transaction> before = persistent.getTransactions();
+        persistent.close();
+
+        // Reopening replays the log into the same rows, ids and times
+        ExpenseTrackerModel reopened = new ExpenseTrackerModel(file.toPath());
+        TransactionSnapshot after = reopened.getSnapshot();
+        assertEquals(before, after);
+        assertEquals(4, after.size());
+        assertEquals(20.0, after.amountAt(0), 0.01);
+        assertEquals("travel", after.categoryAt(2));
+        assertEquals(2, after.timeAt(3));
+        assertEquals(61.0, reopened.getTotalAmount(), 0.01);
+        assertEquals(1, reopened.getCategoryCount("food"));
+        reopened.close();
+    }
+
+    @Test
+    public void testTornTailIsTruncated() throws IOException {
+        File file = new File(folder.getRoot(), "expenses.log");
+        ExpenseTrackerModel persistent = new ExpenseTrackerModel(file.toPath());
+        persistent.addTransaction(new Transaction(10.0, "food"));
+        persistent.addTransaction(new Transaction(20.0, "bills"));
+        persistent.close();
+        long length = file.length();
+
+        // Simulate a crash in the middle of writing the next record
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(length);
+            raf.write(new byte[] {2, 0x40, 0x24, 0, 0});
+        }
+
+        ExpenseTrackerModel reopened = new ExpenseTrackerModel(file.toPath());
+        assertEquals(2, reopened.getTransactions().size());
+        assertEquals(length, file.length());
+        reopened.addTransaction(new Transaction(30.0, "travel"));
+        reopened.close();
+
+        ExpenseTrackerModel again = new ExpenseTrackerModel(file.toPath());
+        assertEquals(3, again.getTransactions().size());
+        assertEquals(60.0, again.getTotalAmount(), 0.01);
+        again.close();
+    }
+
+    @Test
+    public void testTornHeaderIsRewritten() throws IOException {
+        File file = new File(folder.getRoot(), "expenses.log");
+        new ExpenseTrackerModel(file.toPath()).close();
+        long headerLength = file.length();
+
+        // Simulate a crash while the new log's header was written
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(3);
+        }
+        ExpenseTrackerModel reopened = new ExpenseTrackerModel(file.toPath());
+        assertEquals(0, reopened.getTransactions().size());
+        assertEquals(headerLength, file.length());
+        reopened.addTransaction(new Transaction(10.0, "food"));
+        reopened.close();
+        ExpenseTrackerModel again = new ExpenseTrackerModel(file.toPath());
+        assertEquals(1, again.getTransactions().size());
+        again.close();
+
+        // A short file that is not the start of a log is left alone
+        File other = new File(folder.getRoot(), "other.log");
+        try (RandomAccessFile raf = new RandomAccessFile(other, "rw")) {
+            raf.write(new byte[] {1, 2, 3});
+        }
+        try {
+            new ExpenseTrackerModel(other.toPath());
+            fail();
+        } catch (IOException e) {
+            assertEquals("Not a transaction log", e.getMessage());
+        }
+        assertEquals(3, other.length());
+    }
+
+    @Test
+    public void testFailedFlushStopsLaterWrites() throws Exception {
+        File file = new File(folder.getRoot(), "failing.log");
+        FailingChannel channel = new FailingChannel(
+                FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE));
+        // The log is package-private, so it is driven through reflection
+        Class<?> logClass = Class.forName("model.TransactionLog");
+        Constructor<?> constructor = logClass.getDeclaredConstructor(FileChannel.class, long.class);
+        constructor.setAccessible(true);
+        Object log = constructor.newInstance(channel, 0L);
+        Method append = logClass.getDeclaredMethod("append", double.class, int.class, long.class);
+        Method position = logClass.getDeclaredMethod("position");
+        Method sync = logClass.getDeclaredMethod("sync", long.class);
+        append.setAccessible(true);
+        position.setAccessible(true);
+        sync.setAccessible(true);
+
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        append.invoke(log, 10.0, 0, 1L);
+        long first = (Long) position.invoke(log);
+        Thread leader = new Thread(() -> syncQuietly(sync, log, first, errors));
+        leader.start();
+        channel.writing.await();
+        // A follower arrives while the leader's write is in progress
+        append.invoke(log, 20.0, 0, 2L);
+        long second = (Long) position.invoke(log);
+        Thread follower = new Thread(() -> syncQuietly(sync, log, second, errors));
+        follower.start();
+        while (follower.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        channel.fail.countDown();
+        leader.join();
+        follower.join();
+        assertEquals(2, errors.size());
+        for (Throwable error : errors) {
+            assertTrue(error instanceof IOException);
+        }
+        // Nothing was written after the lost batch
+        assertEquals(1, channel.writes.get());
+        channel.close();
+    }
+
+    private static void syncQuietly(Method sync, Object log, long position, ConcurrentLinkedQueue<Throwable> errors) {
+        try {
+            sync.invoke(log, position);
+        } catch (InvocationTargetException e) {
+            errors.add(e.getCause());
+        } catch (IllegalAccessException e) {
+            errors.add(e);
+        }
+    }
+
+    // Fails its first write once released, then writes normally
+    private static final class FailingChannel extends FileChannel {
+        private final FileChannel channel;
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch fail = new CountDownLatch(1);
+        final AtomicInteger writes = new AtomicInteger();
+
+        FailingChannel(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (writes.incrementAndGet() == 1) {
+                writing.countDown();
+                try {
+                    fail.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IOException("No space left on device");
+            }
+            return channel.write(src);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return channel.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            channel.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return channel.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return channel.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+
+    @Test
+    public void testCheckpoint() throws IOException {
+        File file = new File(folder.getRoot(), "expenses.log");
+        ExpenseTrackerModel persistent = new ExpenseTrackerModel(file.toPath());
+        String[] categories = {"food", "travel", "bills"};
+        for (int i = 0; i < 5000; i++) {
+            persistent.addTransaction(new Transaction(1 + i % 100, categories[i % 3]));
+        }
+        persistent.removeTransaction(persistent.getTransactions().get(4999));
+        persistent.removeTransaction(persistent.getTransactions().get(10));
+        persistent.checkpoint();
+        long checkpointed = file.length();
+
+        // Changes after the checkpoint are only in the log
+        persistent.addTransaction(new Transaction(50.0, "other"));
+        persistent.undo();
+        persistent.undo();
+        List<Transaction> before = persistent.getTransactions();
+
+        // Simulate a crash by copying the files before the model is closed
+        File crashed = folder.newFolder("crashed");
+        File log = new File(crashed, "expenses.log");
+        Files.copy(file.toPath(), log.toPath());
+        Files.copy(new File(folder.getRoot(), "expenses.log.checkpoint").toPath(),
+                new File(crashed, "expenses.log.checkpoint").toPath());
+        persistent.close();
+
+        // Damage a record before the checkpoint: it is not replayed, so it does not matter
+        try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+            raf.seek(20);
+            raf.write(0xFF);
+        }
+        ExpenseTrackerModel reopened = new ExpenseTrackerModel(log.toPath());
+        TransactionSnapshot after = reopened.getSnapshot();
+        assertEquals(before, after);
+        assertEquals(4999, after.size());
+        assertEquals(before.get(10).getTime(), after.timeAt(10));
+        assertEquals(1666, reopened.getCategoryCount("travel"));
+        assertEquals(persistent.getTotalAmount(), reopened.getTotalAmount(), 0.01);
+        assertTrue(log.length() > checkpointed);
+
+        // New rows continue after the ids of the checkpoint
+        reopened.addTransaction(new Transaction(7.0, "food"));
+        TransactionSnapshot added = reopened.getSnapshot();
+        assertTrue(added.idAt(4999) > added.idAt(4998));
+        reopened.close();
+    }
+
+    @Test
+    public void testCsvImport() throws IOException {
+        File file = folder.newFile("import.csv");
+        int lines = 50000;
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.print("amount,category,time\r\n");
+            for (int line = 2; line <= lines; line++) {
+                if (line % 1000 == 0) {
+                    out.print("2000," + "food," + line + "\n");
+                } else if (line % 1001 == 0) {
+                    out.print("12,shopping," + line + "\n");
+                } else if (line == 777) {
+                    // Longer than a chunk, but valid
+                    out.print(new String(new char[10000]).replace('\0', ' ') + "5,travel,777\n");
+                } else {
+                    out.print((1 + line % 100) + ",\"" + (line % 2 == 0 ? "Food" : "bills") + "\"," + line + "\r\n");
+                }
+            }
+        }
+        // The last line has no line break
+        try (PrintWriter out = new PrintWriter(new FileWriter(file, true))) {
+            out.print("3,other");
+        }
+
+        // Small chunks so that many of them are parsed in parallel
+        ImportResult result = new CsvImporter(model, 3, 4096).importFile(file.toPath());
+        int rejected = 50 + 49;
+        assertEquals(rejected, result.getRejected());
+        assertEquals(lines - 1 - rejected + 1, result.getImported());
+        assertEquals(1000, result.getRejections().get(0).getLine());
+        assertEquals(1001, result.getRejections().get(1).getLine());
+        assertEquals("The category is not valid.", result.getRejections().get(1).getReason());
+
+        // The rows are in file order
+        TransactionSnapshot snapshot = model.getSnapshot();
+        assertEquals(result.getImported(), snapshot.size());
+        for (int row = 1; row < snapshot.size() - 1; row++) {
+            assertTrue(snapshot.timeAt(row) > snapshot.timeAt(row - 1));
+        }
+        assertEquals(777, snapshot.timeAt(775));
+        assertEquals(5.0, snapshot.amountAt(775), 0.01);
+        assertEquals("other", snapshot.categoryAt(snapshot.size() - 1));
+        assertEquals("food", snapshot.categoryAt(0));
+
+        // Commas and doubled quotes inside quoted fields do not split them
+        File quoted = folder.newFile("quoted.csv");
+        try (PrintWriter out = new PrintWriter(quoted)) {
+            out.print("\"12.50\",\"food\",\"1\"\n");
+            out.print("\"7\",\"food, lunch\",2\n");
+            out.print("8,\"say \"\"hi\"\"\",3\n");
+            out.print("\"1,5\",bills,4\n");
+            out.print(" \"9\" , travel ,5\n");
+        }
+        result = new CsvImporter(new ExpenseTrackerModel()).importFile(quoted.toPath());
+        assertEquals(2, result.getImported());
+        assertEquals(3, result.getRejected());
+        assertEquals(2, result.getRejections().get(0).getLine());
+        assertEquals("The category is not valid.", result.getRejections().get(0).getReason());
+        assertEquals("The category is not valid.", result.getRejections().get(1).getReason());
+        assertEquals("Invalid amount: 1,5", result.getRejections().get(2).getReason());
+
+        // Only plain decimal amounts are accepted
+        File numbers = folder.newFile("numbers.csv");
+        String[] invalid = {"1.5f", "1.5d", "0x1p3", "NaN", "Infinity", "-Infinity", "1e3", ".", "+", "1.2.3"};
+        try (PrintWriter out = new PrintWriter(numbers)) {
+            out.print("1.5,food,1\n+2,food,2\n.5,food,3\n3.,food,4\n");
+            for (String amount : invalid) {
+                out.print(amount + ",food,5\n");
+            }
+        }
+        result = new CsvImporter(new ExpenseTrackerModel()).importFile(numbers.toPath());
+        assertEquals(4, result.getImported());
+        assertEquals(invalid.length, result.getRejected());
+        for (int i = 0; i < invalid.length; i++) {
+            assertEquals(5 + i, result.getRejections().get(i).getLine());
+            assertEquals("Invalid amount: " + invalid[i], result.getRejections().get(i).getReason());
+        }
+    }
+
+    @Test
+    public void testCsvExport() throws IOException {
+        String[] categories = {"food", "travel", "bills"};
+        for (int i = 0; i < 20000; i++) {
+            model.addTransaction(new Transaction(1 + i % 100 + 0.25, categories[i % 3]));
+        }
+        CsvExporter exporter = new CsvExporter(model);
+
+        // Exporting everything and importing it again gives the same rows
+        File all = folder.newFile("all.csv");
+        assertEquals(20000, exporter.export(all.toPath(), null));
+        ExpenseTrackerModel imported = new ExpenseTrackerModel();
+        ImportResult result = new CsvImporter(imported).importFile(all.toPath());
+        assertEquals(0, result.getRejected());
+        TransactionSnapshot original = model.getSnapshot();
+        TransactionSnapshot copy = imported.getSnapshot();
+        assertEquals(original.size(), copy.size());
+        for (int row = 0; row < original.size(); row++) {
+            assertEquals(original.amountAt(row), copy.amountAt(row), 0);
+            assertEquals(original.categoryAt(row), copy.categoryAt(row));
+            assertEquals(original.timeAt(row), copy.timeAt(row));
+        }
+
+        // A filtered export only writes the matching rows
+        File travel = folder.newFile("travel.csv");
+        assertEquals(model.getCategoryCount("travel"), exporter.export(travel.toPath(), new CategoryFilter("travel")));
+        List<String> lines = Files.readAllLines(travel.toPath());
+        assertEquals("amount,category,time", lines.get(0));
+        assertEquals("2.25,travel," + original.timeAt(1), lines.get(1));
+        assertEquals(model.getCategoryCount("travel") + 1, lines.size());
+    }
+
+    @Test
+    public void testDateRangeIndex() {
+        // Rows arrive out of time order, e.g. from several feeds
+        Random random = new Random(15);
+        int rows = 10000;
+        double[] amounts = new double[rows];
+        String[] categories = new String[rows];
+        long[] times = new long[rows];
+        long day = 24L * 60 * 60 * 1000;
+        for (int i = 0; i < rows; i++) {
+            amounts[i] = 1 + random.nextInt(999);
+            categories[i] = i % 2 == 0 ? "food" : "bills";
+            times[i] = random.nextInt(365) * day + random.nextInt(1000);
+        }
+        model.addTransactions(amounts, categories, times, rows);
+        for (int i = 0; i < 100; i++) {
+            model.removeTransaction(model.getTransactions().get(random.nextInt(rows - 200)));
+        }
+
+        List<Transaction> plain = new ArrayList<>(model.getTransactions());
+        TransactionFilter[] filters = {
+            DateRangeFilter.between(30 * day, 60 * day),
+            DateRangeFilter.since(300 * day),
+            DateRangeFilter.before(day),
+            DateRangeFilter.between(100 * day, 200 * day).and(new CategoryFilter("food")),
+        };
+        for (TransactionFilter filter : filters) {
+            assertArrayEquals(filter.filterRows(plain), filter.filterRows(model.getTransactions()));
+        }
+        assertTrue(DateRangeFilter.lastDays(30).filterRows(model.getTransactions()).length == 0);
+
+        // Timestamps are formatted on demand, like the shared formatter does
+        Transaction t = model.getTransactions().get(0);
+        assertEquals(Transaction.dateFormatter.format(new Date(t.getTime())), t.getTimestamp());
+        assertEquals(Transaction.dateFormatter.format(new Date(times[1])), Transaction.formatTime(times[1]));
+    }
+
+    @Test
+    public void testRollups() {
+        Random random = new Random(16);
+        int rows = 5000;
+        double[] amounts = new double[rows];
+        String[] categories = new String[rows];
+        long[] times = new long[rows];
+        String[] names = {"food", "Food", "travel", "bills"};
+        long start = LocalDate.of(2023, 11, 20).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        for (int i = 0; i < rows; i++) {
+            amounts[i] = 1 + random.nextInt(99900) / 100.0;
+            categories[i] = names[random.nextInt(names.length)];
+            times[i] = start + (long) (random.nextDouble() * 400 * 24 * 60 * 60 * 1000);
+        }
+        model.addTransactions(amounts, categories, times, rows);
+        for (int i = 0; i < 200; i++) {
+            model.removeTransaction(model.getTransactions().get(random.nextInt(rows - 300)));
+        }
+        model.undo();
+
+        // Expected values from a scan over the rows
+        LocalDate from = LocalDate.of(2024, 1, 15);
+        LocalDate to = LocalDate.of(2024, 6, 3);
+        double[] daily = new double[(int) (to.toEpochDay() - from.toEpochDay() + 1)];
+        double[] monthly = new double[6];
+        double total = 0;
+        for (Transaction t : model.getTransactions()) {
+            LocalDate date = Instant.ofEpochMilli(t.getTime()).atZone(ZoneId.systemDefault()).toLocalDate();
+            if (!t.getCategory().equalsIgnoreCase("food")) {
+                continue;
+            }
+            if (!date.isBefore(from) && !date.isAfter(to)) {
+                daily[(int) (date.toEpochDay() - from.toEpochDay())] += t.getAmount();
+                total += t.getAmount();
+            }
+            if (date.getYear() == 2024 && date.getMonthValue() <= 6) {
+                monthly[date.getMonthValue() - 1] += t.getAmount();
+            }
+        }
+
+        double[] dailyTotals = model.getDailyTotals("FOOD", from, to);
+        assertEquals(daily.length, dailyTotals.length);
+        for (int i = 0; i < daily.length; i++) {
+            assertEquals(daily[i], dailyTotals[i], 1e-6);
+        }
+        double[] monthlyTotals = model.getMonthlyTotals("food", YearMonth.of(2024, 1), YearMonth.of(2024, 6));
+        for (int i = 0; i < monthly.length; i++) {
+            assertEquals(monthly[i], monthlyTotals[i], 1e-6);
+        }
+        assertEquals(total, model.getTotalBetween("food", from, to), 1e-6);
+        assertEquals(model.getTotalAmount(),
+                model.getTotalBetween(null, LocalDate.of(2000, 1, 1), LocalDate.of(2100, 1, 1)), 1e-6);
+
+        // One row a year over two centuries, before and after 1970, takes many pages
+        ExpenseTrackerModel spread = new ExpenseTrackerModel();
+        long day = 24L * 60 * 60 * 1000;
+        for (int i = -100; i < 100; i++) {
+            spread.addTransactions(new double[] {10}, new String[] {"food"}, new long[] {i * 365 * day + day / 2}, 1);
+        }
+        assertEquals(2000.0, spread.getTotalBetween("food", LocalDate.of(1800, 1, 1), LocalDate.of(2100, 1, 1)), 1e-6);
+        assertEquals(1000.0, spread.getTotalBetween("food", LocalDate.of(1970, 1, 1), LocalDate.of(2100, 1, 1)), 1e-6);
+    }
+
+    @Test
+    public void testValidator() {
+        // The default rules are those of the original InputValidation
+        TransactionValidator validator = TransactionValidator.DEFAULT;
+        assertTrue(validator.isValidAmount(1000));
+        assertTrue(validator.isValidAmount(0.01));
+        assertFalse(validator.isValidAmount(0));
+        assertFalse(validator.isValidAmount(-5));
+        assertFalse(validator.isValidAmount(1000.01));
+        assertFalse(validator.isValidAmount(Double.NaN));
+        assertTrue(validator.isValidCategory("food"));
+        assertTrue(validator.isValidCategory("EnterTainment"));
+        assertFalse(validator.isValidCategory("foods"));
+        assertFalse(validator.isValidCategory("fo od"));
+        assertFalse(validator.isValidCategory(" food"));
+        assertFalse(validator.isValidCategory(""));
+        assertFalse(validator.isValidCategory(null));
+        assertFalse(validator.isValidCategory("f\u00f6od"));
+
+        // Batch validation
+        double[] amounts = {10, 0, 20, 30, 40};
+        String[] categories = {"food", "food", "rent", "bills", "bills"};
+        int[] invalid = new int[amounts.length];
+        assertEquals(2, validator.validate(amounts, categories, amounts.length, invalid));
+        assertEquals(1, invalid[0]);
+        assertEquals(2, invalid[1]);
+        assertEquals(1, validator.firstInvalid(amounts, categories, amounts.length));
+        assertEquals(-1, validator.firstInvalid(amounts, categories, 1));
+
+        // Configured rules apply to the whole application
+        TransactionValidator custom = new TransactionValidator(0, 5000, "rent", "Food");
+        InputValidation.setValidator(custom);
+        try {
+            model.addTransaction(new Transaction(4000, "RENT"));
+            assertEquals(0, custom.validate(new double[] {4000}, new String[] {"food"}, 1, invalid));
+            assertFalse(InputValidation.isValidCategory("bills"));
+        } finally {
+            InputValidation.setValidator(TransactionValidator.DEFAULT);
+        }
+        assertEquals(1, model.getTransactions().size());
+    }
+
+    @Test
+    public void testCategoryRegistry() throws IOException {
+        model.addTransaction(new Transaction(10.0, "Food"));
+        model.addTransactions(new double[] {20.0, 30.0}, new String[] {"FOOD", "bills"}, new long[] {1, 2}, 2);
+        TransactionSnapshot snapshot = model.getSnapshot();
+        // Spellings that only differ in case share one code and one name
+        assertEquals(2, snapshot.categoryCount());
+        assertEquals("food", snapshot.categoryAt(0));
+        assertEquals("food", snapshot.categoryAt(1));
+        assertEquals(snapshot.categoryCode("fOoD"), snapshot.categoryCodeAt(1));
+        assertEquals(-1, snapshot.categoryCode("travel"));
+        assertSame(new Transaction(1.0, "FOOD").getCategory(), new Transaction(2.0, "food").getCategory());
+        assertEquals(2, new CategoryFilter("Food").filter(snapshot).size());
+
+        // Categories can be registered at runtime, for this model only
+        assertEquals("rent", model.registerCategory("Rent"));
+        assertEquals(-1, snapshot.categoryCode("rent"));
+        assertEquals(0, model.getCategorySummary("rent").getCount());
+        TransactionValidator rules = model.getValidator();
+        model.addTransaction(new Transaction(700.0, "RENT", rules));
+        model.addTransactions(new double[] {50.0}, new String[] {"rent"}, new long[] {3}, 1);
+        assertEquals(2, new CategoryFilter("rent", rules).filter(model.getSnapshot()).size());
+        assertEquals(2, model.getCategoryCount("Rent"));
+        assertEquals(750.0, model.getCategorySummary("rent").getTotal(), 0.01);
+        assertTrue(new ExpenseTrackerController(model, new HeadlessView()).addTransaction(10.0, "rent"));
+        assertFalse(InputValidation.isValidCategory("rent"));
+        assertFalse(new ExpenseTrackerModel().getValidator().isValidCategory("rent"));
+        try {
+            new ExpenseTrackerModel().addTransactions(new double[] {50.0}, new String[] {"rent"}, new long[] {3}, 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("The category is not valid.", e.getMessage());
+        }
+
+        // A persistent model allows its registered categories again when reopened
+        File file = new File(folder.getRoot(), "categories.log");
+        ExpenseTrackerModel persistent = new ExpenseTrackerModel(file.toPath());
+        persistent.registerCategory("rent");
+        persistent.close();
+        ExpenseTrackerModel reopened = new ExpenseTrackerModel(file.toPath());
+        assertTrue(reopened.getValidator().isValidCategory("Rent"));
+        reopened.close();
+    }
+
+    @Test
+    public void testHeadlessController() {
+        // Only removes the transactions of 50 or more
+        HeadlessView view = new HeadlessView(t -> t.getAmount() >= 50);
+        ExpenseTrackerController controller = new ExpenseTrackerController(model, view);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(controller.addTransaction(1 + i % 100, i % 2 == 0 ? "food" : "bills"));
+        }
+        assertFalse(controller.addTransaction(-1, "food"));
+        assertEquals(10000, view.getTransactions().size());
+
+        controller.applyFilter();
+        assertEquals("No filter applied", view.getLastMessage());
+        controller.setFilter(new CategoryFilter("bills"));
+        controller.applyFilter();
+        assertEquals(5000, view.getHighlightedRows().length);
+
+        // Rows 0 and 1 are below 50, rows 49 and 50 are not; the total row is skipped
+        view.setSelectedRows(new int[] {0, 1, 49, 50, 10000});
+        controller.handleSelectedRows();
+        assertEquals(9998, model.getTransactions().size());
+        assertEquals(9998, view.getTransactions().size());
+        controller.undoTransaction();
+        assertEquals(9999, view.getTransactions().size());
+    }
+
+    @Test
+    public void testViewUpdatesOnViewThread() throws Exception {
+        List<Runnable> viewThread = new ArrayList<>();
+        AtomicInteger updates = new AtomicInteger();
+        AtomicInteger refreshes = new AtomicInteger();
+        HeadlessView view = new HeadlessView() {
+            @Override
+            public void rowsInserted(List<Transaction> transactions, int firstRow, int lastRow) {
+                updates.incrementAndGet();
+                super.rowsInserted(transactions, firstRow, lastRow);
+            }
+
+            @Override
+            public void refreshTable(List<Transaction> transactions) {
+                refreshes.incrementAndGet();
+                super.refreshTable(transactions);
+            }
+        };
+        ExpenseTrackerController controller = new ExpenseTrackerController(model, view, viewThread::add);
+        controller.refresh();
+        // Changes of a background thread are queued and merged, not shown on that thread
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 100; i++) {
+                model.addTransaction(new Transaction(10, "food"));
+            }
+        });
+        producer.start();
+        producer.join();
+        assertEquals(0, view.getTransactions().size());
+        assertEquals(1, viewThread.size());
+        viewThread.remove(0).run();
+        assertEquals(1, updates.get());
+        assertEquals(100, view.getTransactions().size());
+
+        // Removals of consecutive rows are merged too
+        model.removeTransaction(model.getTransactions().get(5));
+        model.removeTransaction(model.getTransactions().get(5));
+        viewThread.remove(0).run();
+        assertEquals(98, view.getTransactions().size());
+
+        // A refresh already shows the queued changes, which are skipped
+        model.addTransaction(new Transaction(20, "bills"));
+        controller.refresh();
+        viewThread.remove(0).run();
+        assertEquals(1, updates.get());
+        assertEquals(99, view.getTransactions().size());
+        assertTrue(viewThread.isEmpty());
+
+        // Changes that cannot be merged are shown by one refresh from one snapshot
+        refreshes.set(0);
+        model.addTransaction(new Transaction(30, "travel"));
+        model.removeTransaction(model.getTransactions().get(0));
+        viewThread.remove(0).run();
+        assertEquals(1, refreshes.get());
+        assertEquals(1, updates.get());
+        assertEquals(99, view.getTransactions().size());
+        assertEquals(model.getTransactions(), view.getTransactions());
+
+        // An import is shown by one refresh on the view's thread
+        File file = folder.newFile("view.csv");
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.print("5,food\n6,bills\n");
+        }
+        controller.importTransactions(file.toPath());
+        assertEquals(99, view.getTransactions().size());
+        assertEquals(1, viewThread.size());
+        viewThread.remove(0).run();
+        assertEquals(101, view.getTransactions().size());
+        assertEquals(1, updates.get());
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        Metrics.reset();
+        ExpenseTrackerController controller = new ExpenseTrackerController(model, new HeadlessView());
+        for (int i = 0; i < 1000; i++) {
+            controller.addTransaction(1 + i % 100, "food");
+        }
+        controller.setFilter(new AmountFilter(50));
+        controller.applyFilter();
+        controller.undoTransaction();
+        controller.refresh();
+        assertEquals(1000, Metrics.ADD_TRANSACTION.getCount());
+        assertEquals(1000, Metrics.MODEL_ADD.getCount());
+        // One update per add, and one for the undone add
+        assertEquals(1001, Metrics.VIEW_UPDATE.getCount());
+        assertEquals(1, Metrics.APPLY_FILTER.getCount());
+        assertEquals(1, Metrics.FILTER.getCount());
+        assertEquals(1, Metrics.UNDO_TRANSACTION.getCount());
+        assertEquals(1, Metrics.VIEW_REFRESH.getCount());
+        LatencyRecorder adds = Metrics.MODEL_ADD;
+        assertTrue(adds.getP50Nanos() <= adds.getP99Nanos());
+        assertTrue(adds.getP99Nanos() <= adds.getMaxNanos());
+
+        // Percentiles are upper bounds within 12.5%
+        LatencyRecorder recorder = new LatencyRecorder("test");
+        for (int nanos = 1; nanos <= 1000; nanos++) {
+            recorder.record(nanos * 1000L);
+        }
+        assertTrue(recorder.getP50Nanos() >= 500000 && recorder.getP50Nanos() <= 562500);
+        assertTrue(recorder.getP99Nanos() >= 990000 && recorder.getP99Nanos() <= 1000000);
+        assertEquals(500500.0, recorder.getMeanNanos(), 0.01);
+
+        JmxMetrics.register(model);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(999, server.getAttribute(new ObjectName("expensetracker:type=Model"), "RowCount"));
+            assertEquals(1000L, server.getAttribute(
+                new ObjectName("expensetracker:type=Operation,name=model.addTransaction"), "Count"));
+        } finally {
+            JmxMetrics.unregister();
+        }
+
+        // Only redos and undos that change something are recorded
+        controller.redoTransaction();
+        controller.redoTransaction();
+        assertEquals(1, Metrics.REDO_TRANSACTION.getCount());
+        new ExpenseTrackerController(new ExpenseTrackerModel(), new HeadlessView()).undoTransaction();
+        assertEquals(1, Metrics.UNDO_TRANSACTION.getCount());
+    }
+
+    @Test
+    public void testHighlightRenderer() {
+        for (int i = 0; i < 100; i++) {
+            model.addTransaction(new Transaction(1 + i, "food"));
+        }
+        TransactionTableModel tableModel = new TransactionTableModel();
+        tableModel.setTransactions(model.getTransactions());
+        JTable table = new JTable(tableModel);
+        HighlightRenderer renderer = new HighlightRenderer();
+        table.setDefaultRenderer(Object.class, renderer);
+
+        renderer.setHighlightedRows(table, new int[] {3, 50});
+        assertTrue(renderer.isHighlighted(3));
+        assertFalse(renderer.isHighlighted(4));
+        Component cell = renderer.getTableCellRendererComponent(table, "x", false, false, 50, 1);
+        assertSame(HighlightRenderer.HIGHLIGHT, cell.getBackground());
+        cell = renderer.getTableCellRendererComponent(table, "x", false, false, 51, 1);
+        assertEquals(table.getBackground(), cell.getBackground());
+
+        // A new highlight replaces the old one
+        renderer.setHighlightedRows(table, new int[] {51});
+        assertFalse(renderer.isHighlighted(50));
+        assertTrue(renderer.isHighlighted(51));
+
+        // Selected rows keep the selection background, highlighted or not
+        cell = renderer.getTableCellRendererComponent(table, "x", true, false, 51, 1);
+        assertEquals(table.getSelectionBackground(), cell.getBackground());
+        cell = renderer.getTableCellRendererComponent(table, "x", true, false, 52, 1);
+        assertEquals(table.getSelectionBackground(), cell.getBackground());
+        cell = renderer.getTableCellRendererComponent(table, "x", false, false, 52, 1);
+        assertEquals(table.getBackground(), cell.getBackground());
+    }
+
+    @Test
+    public void testParallelFilter() {
+        Random random = new Random(3);
+        String[] categories = {"food", "travel", "bills"};
+        for (int i = 0; i < 50000; i++) {
+            model.addTransaction(new Transaction(1 + random.nextInt(100), categories[random.nextInt(3)]));
+        }
+        TransactionSnapshot stale = model.getSnapshot();
+        // The snapshot is no longer current, so the filters scan its rows
+        model.addTransaction(new Transaction(1, "food"));
+        List<Transaction> list = new ArrayList<>(stale);
+        TransactionFilter[] filters = {
+            new AmountFilter(50), new CategoryFilter("travel"),
+            new CategoryFilter("bills").and(new AmountRangeFilter(10, 20).negate())};
+        try {
+            for (TransactionFilter filter : filters) {
+                FilterEngine.setExecution(FilterEngine.Execution.SEQUENTIAL);
+                int[] expected = filter.filterRows(stale);
+                assertTrue(expected.length > 0);
+                FilterEngine.setExecution(FilterEngine.Execution.PARALLEL);
+                assertArrayEquals(expected, filter.filterRows(stale));
+                assertArrayEquals(expected, filter.filterRows(list));
+                FilterEngine.setExecution(FilterEngine.Execution.ADAPTIVE);
+                assertArrayEquals(expected, filter.filterRows(stale));
+            }
+        } finally {
+            FilterEngine.setExecution(FilterEngine.Execution.ADAPTIVE);
+        }
+    }
+
+    @Test
+    public void testFilterCache() {
+        for (int i = 0; i < 1000; i++) {
+            model.addTransaction(new Transaction(1 + i % 100, i % 2 == 0 ? "food" : "bills"));
+        }
+        assertEquals(new CategoryFilter("Food"), new CategoryFilter("food"));
+        assertEquals(new CategoryFilter("Food").hashCode(), new CategoryFilter("food").hashCode());
+        assertEquals(new AmountFilter(5), new AmountFilter(5.0));
+        assertFalse(new AmountFilter(5).equals(new AmountFilter(6)));
+        assertEquals(new AmountFilter(5).and(new CategoryFilter("bills")),
+            new AmountFilter(5).and(new CategoryFilter("BILLS")));
+
+        FilterCache cache = new FilterCache(2, 1000);
+        int[] food = cache.filterRows(new CategoryFilter("food"), model.getSnapshot());
+        assertSame(food, cache.filterRows(new CategoryFilter("FOOD"), model.getSnapshot()));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        // A change of the model invalidates the results
+        model.addTransaction(new Transaction(1, "food"));
+        int[] changed = cache.filterRows(new CategoryFilter("food"), model.getSnapshot());
+        assertEquals(food.length + 1, changed.length);
+        assertEquals(2, cache.getMissCount());
+        model.undo();
+        assertArrayEquals(food, cache.filterRows(new CategoryFilter("food"), model.getSnapshot()));
+        assertEquals(3, cache.getMissCount());
+
+        // The least recently used result is evicted first
+        cache.filterRows(new AmountFilter(5), model.getSnapshot());
+        cache.filterRows(new CategoryFilter("food"), model.getSnapshot());
+        cache.filterRows(new AmountFilter(6), model.getSnapshot());
+        assertEquals(2, cache.getSize());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(5, cache.getMissCount());
+        cache.filterRows(new CategoryFilter("food"), model.getSnapshot());
+        assertEquals(3, cache.getHitCount());
+        cache.filterRows(new AmountFilter(5), model.getSnapshot());
+        assertEquals(6, cache.getMissCount());
+
+        // The controller reuses the result of a filter applied before
+        ExpenseTrackerController controller = new ExpenseTrackerController(model, new HeadlessView());
+        controller.setFilter(new CategoryFilter("bills"));
+        controller.applyFilter();
+        controller.setFilter(new CategoryFilter("food"));
+        controller.applyFilter();
+        controller.setFilter(new CategoryFilter("Bills"));
+        controller.applyFilter();
+        assertEquals(1, controller.getFilterCache().getHitCount());
+    }
+
+    @Test
+    public void testLiveFilter() {
+        Random random = new Random(11);
+        String[] categories = {"food", "travel", "bills"};
+        for (int i = 0; i < 300; i++) {
+            model.addTransaction(new Transaction(1 + random.nextInt(100), categories[random.nextInt(3)]));
+        }
+        TransactionFilter[] filters = {
+            new CategoryFilter("food"), new AmountRangeFilter(20, 60).negate(), new TopAmountFilter(10)};
+        LiveFilter[] live = new LiveFilter[filters.length];
+        for (int i = 0; i < filters.length; i++) {
+            live[i] = new LiveFilter(model, filters[i]);
+        }
+        // Appends, batches, removals and undos anywhere in the table
+        for (int step = 0; step < 400; step++) {
+            int size = model.getTransactions().size();
+            int action = random.nextInt(5);
+            if (action == 0) {
+                model.addTransaction(new Transaction(1 + random.nextInt(100), categories[random.nextInt(3)]));
+            } else if (action == 1) {
+                int count = 1 + random.nextInt(100);
+                double[] amounts = new double[count];
+                String[] names = new String[count];
+                for (int i = 0; i < count; i++) {
+                    amounts[i] = 1 + random.nextInt(100);
+                    names[i] = categories[random.nextInt(3)];
+                }
+                model.addTransactions(amounts, names, new long[count], count);
+            } else if (action == 2 || action == 3) {
+                model.removeTransaction(model.getTransactions().get(random.nextInt(size)));
+            } else {
+                model.undo();
+            }
+            for (int i = 0; i < filters.length; i++) {
+                int[] expected = filters[i].filterRows(model.getSnapshot());
+                assertArrayEquals(expected, live[i].rows());
+                assertEquals(expected.length, live[i].count());
+            }
+        }
+        live[0].close();
+        int[] before = live[0].rows();
+        model.addTransaction(new Transaction(1, "food"));
+        assertArrayEquals(before, live[0].rows());
+
+        // The controller's highlight follows the changes
+        HeadlessView view = new HeadlessView();
+        ExpenseTrackerController controller = new ExpenseTrackerController(model, view);
+        controller.setFilter(new CategoryFilter("travel"));
+        controller.applyFilter();
+        model.addTransaction(new Transaction(5, "travel"));
+        int last = model.getTransactions().size() - 1;
+        assertTrue(view.isHighlighted(last));
+        model.removeTransaction(model.getTransactions().get(0));
+        assertTrue(view.isHighlighted(last - 1));
+        assertFalse(view.isHighlighted(last));
+        assertArrayEquals(new CategoryFilter("travel").filterRows(model.getSnapshot()), view.getHighlightedRows());
+    }
+
+}